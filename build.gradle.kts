@@ -2,6 +2,7 @@ plugins {
     id("application")
     id("java")
     id("org.openjfx.javafxplugin") version "0.0.13"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.traffic"
@@ -27,6 +28,19 @@ dependencies {
 tasks.test {
     useJUnitPlatform()
 }
+
+// Benchmarks live in src/jmh/java: ./gradlew jmh (narrow with -PjmhInclude=GridTick)
+// Results go to build/results/jmh/results.json, with allocation rates from the GC profiler
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    profilers.set(listOf("gc"))
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    if (project.hasProperty("jmhInclude")) includes.set(listOf(project.property("jmhInclude").toString()))
+}
 application {
     mainClass.set("visuals.TrafficView")
 }
@@ -39,25 +53,42 @@ tasks.register("runSim") {
 
 tasks.register<JavaExec>("runMasConsole") {
     group = "jade"
-    description = "Launches JADE in console mode (No GUI Map)"
+    description = "Launches JADE in console mode (No GUI Map). Grid size: -Prows=50 -Pcols=50 or -PgridConfig=file, one JVM per row band: -Ppartitions=4"
+
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.traffic.MasConsole")
+
+    val gridArgs = mutableListOf<String>()
+    if (project.hasProperty("rows")) gridArgs += listOf("--rows", project.property("rows").toString())
+    if (project.hasProperty("cols")) gridArgs += listOf("--cols", project.property("cols").toString())
+    if (project.hasProperty("gridConfig")) gridArgs += listOf("--grid-config", project.property("gridConfig").toString())
+    if (project.hasProperty("partitions")) gridArgs += listOf("--partitions", project.property("partitions").toString())
+    args(gridArgs)
+}
+
+tasks.register<JavaExec>("runHeadless") {
+    group = "application"
+    description = "Runs the simulation headless, as fast as the CPU allows (no JADE, no GUI)"
 
     classpath = sourceSets["main"].runtimeClasspath
-    mainClass.set("jade.Boot")
-
-    args(
-        "-gui",
-        "-agents",
-        // ROW 0
-        "Node_0_0:agents.IntersectionAgent(150,150,Node_0_1,Node_1_0);" +
-        "Node_0_1:agents.IntersectionAgent(350,150,Node_0_0,Node_0_2,Node_1_1);" +
-        "Node_0_2:agents.IntersectionAgent(550,150,Node_0_1,Node_1_2);" +
-        // ROW 1
-        "Node_1_0:agents.IntersectionAgent(150,350,Node_0_0,Node_2_0,Node_1_1);" +
-        "Node_1_1:agents.IntersectionAgent(350,350,Node_0_1,Node_2_1,Node_1_0,Node_1_2);" + // Center
-        "Node_1_2:agents.IntersectionAgent(550,350,Node_0_2,Node_2_2,Node_1_1);" +
-        // ROW 2
-        "Node_2_0:agents.IntersectionAgent(150,550,Node_1_0,Node_2_1);" +
-        "Node_2_1:agents.IntersectionAgent(350,550,Node_2_0,Node_2_2,Node_1_1);" +
-        "Node_2_2:agents.IntersectionAgent(550,550,Node_2_1,Node_1_2)"
-    )
-}
\ No newline at end of file
+    mainClass.set("org.traffic.HeadlessSimulation")
+    if (project.hasProperty("simArgs")) args(project.property("simArgs").toString().split(" "))
+}
+
+tasks.register<JavaExec>("runTraining") {
+    group = "application"
+    description = "Trains SMART policies offline over many parallel episodes and exports them"
+
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.traffic.TrainingRunner")
+    if (project.hasProperty("trainArgs")) args(project.property("trainArgs").toString().split(" "))
+}
+
+tasks.register<JavaExec>("runSweep") {
+    group = "application"
+    description = "Sweeps SMART hyperparameters on fixed seeds against every baseline mode, into a CSV"
+
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.traffic.SweepRunner")
+    if (project.hasProperty("sweepArgs")) args(project.property("sweepArgs").toString().split(" "))
+}
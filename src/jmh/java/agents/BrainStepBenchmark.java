@@ -0,0 +1,62 @@
+package agents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One SMART decision step (learn from the last action, pick the next) for each brain kind,
+// over the same recorded observations encoded the way each brain reads them.
+// Run with -prof gc to confirm neither allocates.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BrainStepBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"TABULAR", "LINEAR"})
+    public String brain;
+
+    private Brain learner;
+    private final int[] states = new int[SAMPLES];
+    private final double[] rewards = new double[SAMPLES];
+    private int cursor = 0;
+    private int lastAction = 0;
+
+    @Setup
+    public void setup() {
+        Brain.Kind kind = Brain.Kind.valueOf(brain);
+        QTableRegistry tables = new QTableRegistry();
+        tables.setBrain(kind);
+        StateEncoder encoder = tables.newEncoder(20);
+        learner = kind == Brain.Kind.LINEAR
+                ? new LinearBrain((RawStateEncoder) encoder, 42, Hyperparameters.DEFAULTS)
+                : new RLBrain(encoder.getStateCount(), 42);
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int k = 0; k < SAMPLES; k++) {
+            int ns = rnd.nextInt(25), ew = rnd.nextInt(25);
+            states[k] = encoder.encodeState(ns, ew, rnd.nextBoolean(), rnd.nextInt(4) == 0, rnd.nextInt(21) / 2.0, rnd.nextInt(8) == 0);
+            rewards[k] = encoder.calculateReward(ns, ew, rnd.nextInt(3) == 0);
+        }
+        // Warm the weights / table
+        for (int k = 0; k < 10 * SAMPLES; k++) step();
+    }
+
+    @Benchmark
+    public int step() {
+        int k = cursor++ & (SAMPLES - 1);
+        int next = (k + 1) & (SAMPLES - 1);
+        learner.update(states[k], lastAction, rewards[k], states[next]);
+        lastAction = learner.chooseAction(states[next]);
+        return lastAction;
+    }
+}
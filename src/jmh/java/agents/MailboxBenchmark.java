@@ -0,0 +1,49 @@
+package agents;
+
+import jade.core.AID;
+import jade.lang.acl.ACLMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-signal cost on the sender and receiver side: an in-process mailbox round trip against
+// building and decoding the equivalent JADE message (delivery through the container not included)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MailboxBenchmark {
+
+    private Mailbox mailbox;
+    private Mailbox.Handler handler;
+    private int received = 0;
+    private int cursor = 0;
+
+    @Setup
+    public void setup() {
+        mailbox = new Mailbox(LocalBus.DEFAULT_CAPACITY);
+        handler = (kind, cars, eta) -> received += cars + eta;
+    }
+
+    @Benchmark
+    public int localSignal() {
+        mailbox.offer(Mailbox.GREEN_WAVE, cursor++ & 31, 3);
+        mailbox.drain(handler);
+        return received;
+    }
+
+    @Benchmark
+    public int aclSignal() {
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPAGATE);
+        msg.addReceiver(new AID("Node_1_0@bench", AID.ISGUID)); // ISLOCALNAME needs a running platform
+        msg.setByteSequenceContent(GreenWaveNotice.encode(cursor++ & 31, 3));
+        byte[] notice = msg.getByteSequenceContent();
+        received += GreenWaveNotice.cars(notice) + GreenWaveNotice.etaTicks(notice);
+        return received;
+    }
+}
@@ -0,0 +1,56 @@
+package agents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Inputs cycle through pre-drawn queue lengths so every bucket branch is taken
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MicroStateEncoderBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private MicroStateEncoder encoder;
+    private StateEncoder neighborEncoder;
+    private final int[] queueNS = new int[SAMPLES];
+    private final int[] queueEW = new int[SAMPLES];
+    private int cursor = 0;
+
+    @Setup
+    public void setup() {
+        encoder = new MicroStateEncoder();
+        neighborEncoder = new NeighborStateEncoder(Hyperparameters.DEFAULTS, 20);
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int k = 0; k < SAMPLES; k++) {
+            queueNS[k] = rnd.nextInt(25);
+            queueEW[k] = rnd.nextInt(25);
+        }
+    }
+
+    @Benchmark
+    public int encodeState() {
+        int k = cursor++ & (SAMPLES - 1);
+        return encoder.encodeState(queueNS[k], queueEW[k], (k & 1) == 0);
+    }
+
+    @Benchmark
+    public int encodeNeighborState() {
+        int k = cursor++ & (SAMPLES - 1);
+        return neighborEncoder.encodeState(queueNS[k], queueEW[k], (k & 1) == 0, (k & 6) == 0, queueEW[k] * 0.5, (k & 8) == 0);
+    }
+
+    @Benchmark
+    public double calculateReward() {
+        int k = cursor++ & (SAMPLES - 1);
+        return encoder.calculateReward(queueNS[k], queueEW[k], (k & 3) == 0);
+    }
+}
@@ -0,0 +1,64 @@
+package agents;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Q-learning steps over a recorded sequence of encoded states
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RLBrainBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    private RLBrain brain;
+    private FrozenPolicy frozen;
+    private final int[] states = new int[SAMPLES];
+    private final int[] actions = new int[SAMPLES];
+    private final double[] rewards = new double[SAMPLES];
+    private final int[] queuesNS = new int[SAMPLES];
+    private int cursor = 0;
+
+    @Setup
+    public void setup() {
+        MicroStateEncoder encoder = new MicroStateEncoder();
+        brain = new RLBrain(encoder.getStateCount(), 42);
+        SplittableRandom rnd = new SplittableRandom(42);
+        for (int k = 0; k < SAMPLES; k++) {
+            int ns = rnd.nextInt(25), ew = rnd.nextInt(25);
+            queuesNS[k] = ns;
+            states[k] = encoder.encodeState(ns, ew, rnd.nextBoolean());
+            actions[k] = rnd.nextInt(RLBrain.ACTION_COUNT);
+            rewards[k] = encoder.calculateReward(ns, ew, actions[k] == RLBrain.ACTION_SWITCH);
+        }
+        // Touch every state once so the table is warm
+        for (int k = 0; k < SAMPLES; k++) brain.update(states[k], actions[k], rewards[k], states[(k + 1) & (SAMPLES - 1)]);
+        frozen = FrozenPolicy.compile(brain.getTable(), encoder);
+    }
+
+    @Benchmark
+    public int chooseAction() {
+        return brain.chooseAction(states[cursor++ & (SAMPLES - 1)]);
+    }
+
+    // Deploy-only decision, safety masking included
+    @Benchmark
+    public int frozenAction() {
+        int k = cursor++ & (SAMPLES - 1);
+        return frozen.action(states[k], queuesNS[k]);
+    }
+
+    @Benchmark
+    public void update() {
+        int k = cursor++ & (SAMPLES - 1);
+        brain.update(states[k], actions[k], rewards[k], states[(k + 1) & (SAMPLES - 1)]);
+    }
+}
@@ -0,0 +1,70 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.traffic.HeadlessSimulation;
+
+import java.util.concurrent.TimeUnit;
+
+// One full engine tick over a square grid; the score is ticks per second.
+// Each grid size runs in its own fork, so the CityMap singleton holds one grid only.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GridTickBenchmark {
+
+    @Param({"3", "50", "200"})
+    public int size;
+
+    @Param({"SMART"})
+    public String mode;
+
+    @Param({"1"})
+    public int threads;
+
+    // Event-driven stepping; off-peak grids (-p highway=2 -p side=1) are where it pays off
+    @Param({"false", "true"})
+    public boolean eventDriven;
+
+    @Param({"50"})
+    public int highway;
+
+    @Param({"15"})
+    public int side;
+
+    // Ticks run before measuring, so queues and Q-tables are past their empty start
+    @Param({"200"})
+    public int warmTicks;
+
+    private SimulationEngine engine;
+
+    @Setup
+    public void setup() {
+        CityMap map = CityMap.getInstance();
+        map.setMode(CityMap.Mode.valueOf(mode));
+        map.setTrafficParams(highway, side);
+        engine = HeadlessSimulation.buildGrid(new GridLayout(size, size));
+        engine.setParallelism(threads);
+        engine.setEventDriven(eventDriven);
+        map.setSimulationRunning(true);
+        engine.run(warmTicks);
+    }
+
+    @TearDown
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Benchmark
+    public long tick() {
+        engine.step();
+        return engine.getTick();
+    }
+}
@@ -0,0 +1,82 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One sweep of the pheromone field (deposit, diffuse, pressure) over a square grid with
+// fixed queues, without any agents; the score is time per sweep. activeSweep is the
+// event-driven engine's sweep, with the nodes holding cars touched as if they had been stepped.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PheromoneFieldBenchmark {
+
+    @Param({"50", "200"})
+    public int size;
+
+    @Param({"0.0", "0.2"})
+    public double diffusion;
+
+    // Share of the nodes with cars queued (1.0 = rush hour, 0.01 = off-peak)
+    @Param({"1.0", "0.01"})
+    public double busy;
+
+    private PheromoneField field;
+    private int[] busyNodes;
+
+    @Setup
+    public void setup() {
+        NodeStore store = new NodeStore(size * size);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) store.add(GridLayout.nodeName(r, c), c, r);
+        }
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                store.connect(r * size + c, r + 1 < size ? (r + 1) * size + c : -1, c + 1 < size ? r * size + c + 1 : -1);
+            }
+        }
+        // At full load about half the grid is congested enough to deposit
+        SplittableRandom rnd = new SplittableRandom(42);
+        busyNodes = new int[store.size()];
+        int count = 0;
+        for (int i = 0; i < store.size(); i++) {
+            if (rnd.nextDouble() >= busy) continue;
+            new TrafficNode(store, i).addCarsNorthSouth(rnd.nextInt(24));
+            busyNodes[count++] = i;
+        }
+        busyNodes = Arrays.copyOf(busyNodes, count);
+        field = store.getPheromoneField();
+        field.setDiffusion(diffusion);
+        field.sweep();
+    }
+
+    @Benchmark
+    public double sweep() {
+        field.sweep();
+        return field.getPressure(size);
+    }
+
+    @Benchmark
+    public double activeSweep() {
+        for (int i : busyNodes) field.touch(i);
+        field.prepareActive();
+        int[] nodes = field.getDepositNodes();
+        for (int k = 0; k < field.getDepositCount(); k++) field.depositPass.accept(nodes[k]);
+        nodes = field.getDiffuseNodes();
+        for (int k = 0; k < field.getDiffuseCount(); k++) field.diffusePass.accept(nodes[k]);
+        nodes = field.getPressureNodes();
+        for (int k = 0; k < field.getPressureCount(); k++) field.pressurePass.accept(nodes[k]);
+        field.finishActive();
+        return field.getPressure(size);
+    }
+}
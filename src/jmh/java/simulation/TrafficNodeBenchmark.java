@@ -0,0 +1,53 @@
+package simulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-node physics on a single intersection, outside any grid
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TrafficNodeBenchmark {
+
+    private NodeStore store;
+    private TrafficNode node;
+    private int index;
+
+    @Setup
+    public void setup() {
+        CityMap.getInstance().setTrafficParams(50, 15);
+        store = new NodeStore(1);
+        index = store.add("Node_0_0", 0, 0);
+        node = new TrafficNode(store, index);
+    }
+
+    // One car in, one car through and out of the grid (ring push, pop and wait record)
+    @Benchmark
+    public int processFlow() {
+        node.addCarsNorthSouth(1);
+        int moved = node.processFlow();
+        store.settleOutflow(index);
+        return moved;
+    }
+
+    @Benchmark
+    public int generateTrafficFlow() {
+        node.generateTrafficFlow();
+        // Arrivals are uncapped; start over before the queue stops looking like traffic
+        if (node.getRealQueueNS() + node.getRealQueueEW() > 64) store.reset(index);
+        return node.getRealQueueNS();
+    }
+
+    @Benchmark
+    public double updatePheromones() {
+        node.updatePheromones();
+        return node.getPheromoneLevel();
+    }
+}
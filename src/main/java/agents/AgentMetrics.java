@@ -0,0 +1,232 @@
+package agents;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Aggregate of every AgentProbe in this container, registered as one MBean,
+// traffic:type=AgentMetrics,container=<name>. Readings walk the probes on demand; agents pay
+// only for their own counters.
+public class AgentMetrics implements AgentMetricsMXBean {
+
+    private static final AgentMetrics instance = new AgentMetrics();
+
+    private final List<AgentProbe> probes = new CopyOnWriteArrayList<>();
+    private volatile long since = System.nanoTime();
+    private volatile int topN = 10;
+    private ObjectName registeredAs = null;
+
+    public static AgentMetrics getInstance() {
+        return instance;
+    }
+
+    // Once per JVM; a JVM runs one container (or one partition)
+    public synchronized void register(String container) {
+        if (registeredAs != null) return;
+        try {
+            registeredAs = new ObjectName("traffic:type=AgentMetrics,container=" + ObjectName.quote(container));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registeredAs);
+            System.out.println("Agent metrics: JMX " + registeredAs);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public AgentProbe newProbe(String agent) {
+        AgentProbe p = new AgentProbe(agent);
+        probes.add(p);
+        return p;
+    }
+
+    public void remove(AgentProbe probe) {
+        probes.remove(probe);
+    }
+
+    @Override
+    public int getAgentCount() {
+        return probes.size();
+    }
+
+    @Override
+    public long getTicks() {
+        long t = 0;
+        for (AgentProbe p : probes) t += p.ticks;
+        return t;
+    }
+
+    @Override
+    public double getMeanTickMicros() {
+        long t = 0, nanos = 0;
+        for (AgentProbe p : probes) {
+            t += p.ticks;
+            nanos += p.tickNanos;
+        }
+        return t == 0 ? 0.0 : nanos / 1000.0 / t;
+    }
+
+    @Override
+    public long getMaxTickMicros() {
+        long max = 0;
+        for (AgentProbe p : probes) max = Math.max(max, p.maxTickNanos);
+        return max / 1000;
+    }
+
+    @Override
+    public long getP99TickMicros() {
+        long[] h = getTickHistogram();
+        long total = 0;
+        for (long c : h) total += c;
+        if (total == 0) return 0;
+        long seen = 0;
+        for (int b = 0; b < h.length; b++) {
+            seen += h[b];
+            if (seen >= Math.ceil(total * 0.99)) return 1L << b;
+        }
+        return 1L << (h.length - 1);
+    }
+
+    @Override
+    public long[] getTickHistogram() {
+        long[] h = new long[AgentProbe.TICK_BUCKETS];
+        for (AgentProbe p : probes) {
+            for (int b = 0; b < h.length; b++) h[b] += p.tickHistogram[b];
+        }
+        return h;
+    }
+
+    @Override
+    public Map<String, Long> getSectionMicros() {
+        Map<String, Long> m = new LinkedHashMap<>();
+        for (AgentProbe.Section s : AgentProbe.Section.values()) {
+            long nanos = 0;
+            for (AgentProbe p : probes) nanos += p.sectionNanos[s.ordinal()];
+            m.put(s.name(), nanos / 1000);
+        }
+        return m;
+    }
+
+    @Override
+    public Map<String, Double> getDecisionsPerSecondByDesire() {
+        Map<String, Double> m = new LinkedHashMap<>();
+        double seconds = elapsedSeconds();
+        for (Desire d : Desire.values()) {
+            long n = 0;
+            for (AgentProbe p : probes) n += p.desires[d.ordinal()];
+            m.put(d.name(), n / seconds);
+        }
+        return m;
+    }
+
+    @Override
+    public Map<String, Double> getDecisionsPerSecondByIntention() {
+        Map<String, Double> m = new LinkedHashMap<>();
+        double seconds = elapsedSeconds();
+        for (Intention i : Intention.values()) {
+            long n = 0;
+            for (AgentProbe p : probes) n += p.intentions[i.ordinal()];
+            m.put(i.name(), n / seconds);
+        }
+        return m;
+    }
+
+    @Override
+    public long getPhaseSwitches() {
+        long n = 0;
+        for (AgentProbe p : probes) n += p.phaseSwitches;
+        return n;
+    }
+
+    @Override
+    public long getMessagesSent() {
+        long n = 0;
+        for (AgentProbe p : probes) n += p.sent;
+        return n;
+    }
+
+    @Override
+    public long getMessagesReceived() {
+        long n = 0;
+        for (AgentProbe p : probes) n += p.received;
+        return n;
+    }
+
+    @Override
+    public double getMeanMailboxDepth() {
+        long samples = 0, sum = 0;
+        for (AgentProbe p : probes) {
+            samples += p.starts;
+            sum += p.mailboxDepthSum;
+        }
+        return samples == 0 ? 0.0 : (double) sum / samples;
+    }
+
+    @Override
+    public int getMaxMailboxDepth() {
+        int max = 0;
+        for (AgentProbe p : probes) max = Math.max(max, p.maxMailboxDepth);
+        return max;
+    }
+
+    @Override
+    public double getMeanTickLagMillis() {
+        long samples = 0, sum = 0;
+        for (AgentProbe p : probes) {
+            samples += p.starts;
+            sum += p.lagMillisSum;
+        }
+        return samples == 0 ? 0.0 : (double) sum / samples;
+    }
+
+    @Override
+    public long getMaxTickLagMillis() {
+        long max = 0;
+        for (AgentProbe p : probes) max = Math.max(max, p.maxLagMillis);
+        return max;
+    }
+
+    @Override
+    public String[] getSlowestAgents() {
+        int n = topN;
+        Comparator<AgentProbe> byMean = Comparator.comparingDouble(AgentProbe::meanTickNanos);
+        PriorityQueue<AgentProbe> top = new PriorityQueue<>(n + 1, byMean);
+        for (AgentProbe p : probes) {
+            top.add(p);
+            if (top.size() > n) top.poll();
+        }
+        List<AgentProbe> slowest = new ArrayList<>(top);
+        slowest.sort(byMean.reversed());
+        String[] out = new String[slowest.size()];
+        for (int k = 0; k < out.length; k++) {
+            AgentProbe p = slowest.get(k);
+            out[k] = String.format("%s mean=%.1fus max=%dus ticks=%d lag=%dms",
+                    p.getName(), p.meanTickNanos() / 1000.0, p.maxTickNanos / 1000, p.ticks, p.lastLagMillis);
+        }
+        return out;
+    }
+
+    @Override
+    public int getTopN() {
+        return topN;
+    }
+
+    @Override
+    public void setTopN(int n) {
+        topN = Math.max(1, n);
+    }
+
+    @Override
+    public void reset() {
+        for (AgentProbe p : probes) p.requestReset();
+        since = System.nanoTime();
+    }
+
+    private double elapsedSeconds() {
+        return Math.max(1e-3, (System.nanoTime() - since) / 1e9);
+    }
+}
@@ -0,0 +1,52 @@
+package agents;
+
+import java.util.Map;
+
+// JMX view of the agents in one container (see AgentMetrics); times in microseconds
+public interface AgentMetricsMXBean {
+
+    int getAgentCount();
+
+    long getTicks();
+
+    double getMeanTickMicros();
+
+    long getMaxTickMicros();
+
+    // Upper bound of the histogram bucket holding the 99th percentile
+    long getP99TickMicros();
+
+    // Tick count per bucket, bucket b = [2^(b-1), 2^b) us
+    long[] getTickHistogram();
+
+    // Total time per section (physics, beliefs, RL logic, deliberation, messages)
+    Map<String, Long> getSectionMicros();
+
+    Map<String, Double> getDecisionsPerSecondByDesire();
+
+    Map<String, Double> getDecisionsPerSecondByIntention();
+
+    long getPhaseSwitches();
+
+    long getMessagesSent();
+
+    long getMessagesReceived();
+
+    double getMeanMailboxDepth();
+
+    int getMaxMailboxDepth();
+
+    // How far tick starts fall behind the 1000 ms schedule
+    double getMeanTickLagMillis();
+
+    long getMaxTickLagMillis();
+
+    // Slowest agents by mean tick time: "name mean=.. max=.. ticks=.."
+    String[] getSlowestAgents();
+
+    int getTopN();
+
+    void setTopN(int n);
+
+    void reset();
+}
@@ -0,0 +1,115 @@
+package agents;
+
+import java.util.Arrays;
+
+// Hot-path counters of one agent. Only the agent's own thread writes them; AgentMetrics reads
+// them over JMX without locks, so a reading can be a tick behind. Durations are nanoTime deltas.
+public final class AgentProbe {
+
+    // Tick durations, bucket b = [2^(b-1), 2^b) microseconds (bucket 0 below 1 us)
+    public static final int TICK_BUCKETS = 32;
+
+    // Where a tick's time goes
+    public enum Section {
+        PHYSICS,        // arrivals, queue flow, transfers
+        BELIEFS,        // updateBeliefs
+        RL_LOGIC,       // runRLLogic (SMART)
+        DELIBERATION,   // deliberate / plan / execute (BDI modes)
+        MESSAGES        // mailbox drain, ACL handling, boundary state
+    }
+
+    private final String name;
+    final long[] tickHistogram = new long[TICK_BUCKETS];
+    final long[] sectionNanos = new long[Section.values().length];
+    final long[] desires = new long[Desire.values().length];
+    final long[] intentions = new long[Intention.values().length];
+    long ticks, tickNanos, maxTickNanos;
+    long phaseSwitches, sent, received;
+    // Per tick start: mailbox depth before the drain
+    long starts, mailboxDepthSum;
+    int maxMailboxDepth;
+    // Lag of a tick's start behind a fixed-rate schedule anchored at the first tick
+    long lagMillisSum, maxLagMillis, lastLagMillis;
+    private long firstTickNanos = 0;
+    // Set by JMX, applied by the owner at its next tick
+    private volatile boolean resetRequested = false;
+
+    public AgentProbe(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // tickCount is 1-based, as TickerBehaviour counts
+    public void tickStarted(long now, int tickCount, long periodMillis, int mailboxDepth) {
+        if (resetRequested) clear();
+        if (tickCount <= 1 || firstTickNanos == 0) {
+            firstTickNanos = now - (tickCount - 1) * periodMillis * 1_000_000L;
+        }
+        long lag = Math.max(0, (now - firstTickNanos) / 1_000_000L - (tickCount - 1) * periodMillis);
+        lastLagMillis = lag;
+        lagMillisSum += lag;
+        if (lag > maxLagMillis) maxLagMillis = lag;
+
+        starts++;
+        mailboxDepthSum += mailboxDepth;
+        if (mailboxDepth > maxMailboxDepth) maxMailboxDepth = mailboxDepth;
+    }
+
+    public void tickEnded(long nanos) {
+        ticks++;
+        tickNanos += nanos;
+        if (nanos > maxTickNanos) maxTickNanos = nanos;
+        tickHistogram[bucket(nanos)]++;
+    }
+
+    public void section(Section s, long nanos) {
+        sectionNanos[s.ordinal()] += nanos;
+    }
+
+    public void desire(Desire d) {
+        desires[d.ordinal()]++;
+    }
+
+    public void intention(Intention i) {
+        intentions[i.ordinal()]++;
+        if (i == Intention.SWITCH_PHASE) phaseSwitches++;
+    }
+
+    public void sent() {
+        sent++;
+    }
+
+    public void received() {
+        received++;
+    }
+
+    public double meanTickNanos() {
+        long t = ticks;
+        return t == 0 ? 0.0 : (double) tickNanos / t;
+    }
+
+    static int bucket(long nanos) {
+        long micros = nanos / 1000;
+        return Math.min(TICK_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    void requestReset() {
+        resetRequested = true;
+    }
+
+    private void clear() {
+        resetRequested = false;
+        Arrays.fill(tickHistogram, 0);
+        Arrays.fill(sectionNanos, 0);
+        Arrays.fill(desires, 0);
+        Arrays.fill(intentions, 0);
+        ticks = tickNanos = maxTickNanos = 0;
+        phaseSwitches = sent = received = 0;
+        starts = mailboxDepthSum = 0;
+        maxMailboxDepth = 0;
+        lagMillisSum = maxLagMillis = lastLagMillis = 0;
+    }
+}
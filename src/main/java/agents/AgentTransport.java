@@ -0,0 +1,68 @@
+package agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+
+// Delivers an IntersectionAgent's green-wave notices: into the receiver's in-process mailbox
+// when it runs in this JVM, as a JADE PROPAGATE message otherwise (or when the mailbox is full).
+// Cars and the ambulance only come through here for neighbours in another partition.
+public class AgentTransport implements IntersectionController.Signals {
+
+    private final Agent agent;
+    private final AgentProbe probe;
+    private BoundaryLink boundary = null;
+    // Notices only go to the two downstream neighbours; their mailboxes are kept once found
+    private final String[] boxNames = new String[2];
+    private final Mailbox[] boxes = new Mailbox[2];
+
+    public AgentTransport(Agent agent, AgentProbe probe) {
+        this.agent = agent;
+        this.probe = probe;
+    }
+
+    public void setBoundary(BoundaryLink boundary) {
+        this.boundary = boundary;
+    }
+
+    @Override
+    public boolean transfer(String target, int cars, boolean southBound) {
+        return boundary == null || boundary.transfer(target, cars, southBound);
+    }
+
+    @Override
+    public boolean ambulance(String target) {
+        return boundary != null && boundary.ambulance(target);
+    }
+
+    @Override
+    public void greenWave(String target, int cars, int etaTicks) {
+        probe.sent();
+        Mailbox box = mailboxFor(target);
+        if (box != null && box.offer(Mailbox.GREEN_WAVE, cars, etaTicks)) {
+            MessageStats.recordSentLocal();
+            return;
+        }
+
+        ACLMessage msg = new ACLMessage(ACLMessage.PROPAGATE);
+        msg.addReceiver(new AID(target, AID.ISLOCALNAME));
+        msg.setByteSequenceContent(GreenWaveNotice.encode(cars, etaTicks));
+        agent.send(msg);
+        MessageStats.recordSent(GreenWaveNotice.BYTES);
+    }
+
+    private Mailbox mailboxFor(String target) {
+        for (int k = 0; k < boxNames.length; k++) {
+            if (boxNames[k] == null) {
+                Mailbox box = LocalBus.lookup(target);
+                if (box != null) {
+                    boxNames[k] = target;
+                    boxes[k] = box;
+                }
+                return box;
+            }
+            if (boxNames[k].equals(target)) return boxes[k];
+        }
+        return LocalBus.lookup(target);
+    }
+}
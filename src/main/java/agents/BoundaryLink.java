@@ -0,0 +1,149 @@
+package agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.lang.acl.ACLMessage;
+import simulation.PheromoneField;
+import simulation.TrafficNode;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// An intersection's links to neighbours owned by another partition (another container and
+// JVM), which it cannot reach through the shared map. Everything crosses as JADE messages
+// (see BoundaryMessage), handled on the agent's own thread:
+//   TRANSFER   cars handed over, admitted by the receiver when the message arrives
+//   AMBULANCE  the ambulance moves on
+//   STATE      after each tick that changed it: our pheromone level, the room left on the
+//              approach the recipient feeds, and how many of its cars we have received
+// A sender hands over cars only if the receiver's last advertised room, minus the cars still
+// in flight (sent but not yet counted in a STATE), covers them; otherwise they stay queued,
+// as with a full local neighbour. The only inflow of a south-bound approach is its north
+// neighbour, so with row bands a transfer never overshoots and no car is lost.
+public class BoundaryLink {
+
+    public static final String ONTOLOGY = "boundary";
+
+    // Per partition (i.e. per JVM)
+    private static final LongAdder carsOut = new LongAdder();
+    private static final LongAdder carsIn = new LongAdder();
+    private static final LongAdder carsHeld = new LongAdder();
+    private static final LongAdder carsDropped = new LongAdder();
+    private static final LongAdder messages = new LongAdder();
+    private static final LongAdder bytes = new LongAdder();
+
+    private final Agent agent;
+    private final TrafficNode node;
+    private final AgentProbe probe;
+
+    // By PheromoneField direction; null where the neighbour is local or absent
+    private final String[] remote = new String[4];
+    private final int[] room = new int[4];
+    private final long[] sent = new long[4];
+    private final long[] acked = new long[4];
+    private final long[] received = new long[4];
+
+    // Last STATE per direction, so an unchanged one is not sent again
+    private final double[] lastLevel = new double[4];
+    private final int[] lastRoom = new int[4];
+    private final long[] lastReceived = new long[4];
+    private final boolean[] stateSent = new boolean[4];
+
+    public BoundaryLink(Agent agent, TrafficNode node, AgentProbe probe) {
+        this.agent = agent;
+        this.node = node;
+        this.probe = probe;
+    }
+
+    public void addRemote(int direction, String neighbor) {
+        remote[direction] = neighbor;
+    }
+
+    public boolean isEmpty() {
+        for (String r : remote) if (r != null) return false;
+        return true;
+    }
+
+    // Cars leave us for the south or east neighbour
+    public boolean transfer(String target, int cars, boolean southBound) {
+        int d = southBound ? PheromoneField.SOUTH : PheromoneField.EAST;
+        if (!target.equals(remote[d])) return true; // Not a boundary: left the grid
+        if (cars > room[d] - (sent[d] - acked[d])) {
+            carsHeld.add(cars);
+            return false;
+        }
+        sent[d] += cars;
+        carsOut.add(cars);
+        send(target, BoundaryMessage.transfer(cars, southBound));
+        return true;
+    }
+
+    public boolean ambulance(String target) {
+        if (!target.equals(remote[PheromoneField.SOUTH])) return false;
+        send(target, BoundaryMessage.ambulance());
+        return true;
+    }
+
+    // After each tick
+    public void publishState() {
+        double level = node.getPheromoneLevel();
+        for (int d = 0; d < 4; d++) {
+            if (remote[d] == null) continue;
+            // North neighbours feed our north-south approach, west ones the east-west one
+            int free = 0;
+            if (d == PheromoneField.NORTH) free = node.getMaxCapacity() - node.getRealQueueNS();
+            if (d == PheromoneField.WEST) free = node.getMaxCapacity() - node.getRealQueueEW();
+            if (stateSent[d] && lastLevel[d] == level && lastRoom[d] == free && lastReceived[d] == received[d]) continue;
+            send(remote[d], BoundaryMessage.state(level, free, received[d]));
+            stateSent[d] = true;
+            lastLevel[d] = level;
+            lastRoom[d] = free;
+            lastReceived[d] = received[d];
+        }
+    }
+
+    // false if msg is not a boundary message from one of our remote neighbours
+    public boolean handle(ACLMessage msg) {
+        if (!ONTOLOGY.equals(msg.getOntology())) return false;
+        String from = msg.getSender().getLocalName();
+        int d = 0;
+        while (d < 4 && !from.equals(remote[d])) d++;
+        if (d == 4) return false;
+
+        byte[] payload = msg.getByteSequenceContent();
+        switch (BoundaryMessage.kind(payload)) {
+            case BoundaryMessage.TRANSFER -> {
+                int cars = BoundaryMessage.cars(payload);
+                received[d] += cars;
+                carsIn.add(cars);
+                boolean admitted = BoundaryMessage.southBound(payload) ? node.addCarsNorthSouth(cars) : node.addCarsEastWest(cars);
+                if (!admitted) carsDropped.add(cars);
+            }
+            case BoundaryMessage.AMBULANCE -> node.addAmbulance();
+            case BoundaryMessage.STATE -> {
+                node.setRemotePheromone(d, BoundaryMessage.level(payload));
+                room[d] = BoundaryMessage.room(payload);
+                acked[d] = BoundaryMessage.received(payload);
+            }
+            default -> System.out.println(agent.getLocalName() + ": malformed boundary message from " + from);
+        }
+        return true;
+    }
+
+    private void send(String target, byte[] payload) {
+        ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+        msg.addReceiver(new AID(target, AID.ISLOCALNAME));
+        msg.setOntology(ONTOLOGY);
+        msg.setByteSequenceContent(payload);
+        agent.send(msg);
+        probe.sent();
+        messages.increment();
+        bytes.add(payload.length);
+    }
+
+    public static long getCarsOut() { return carsOut.sum(); }
+    public static long getCarsIn() { return carsIn.sum(); }
+    public static long getCarsHeld() { return carsHeld.sum(); }
+    public static long getCarsDropped() { return carsDropped.sum(); }
+    public static long getMessages() { return messages.sum(); }
+    public static long getBytes() { return bytes.sum(); }
+}
@@ -0,0 +1,66 @@
+package agents;
+
+import java.nio.ByteBuffer;
+
+// Payloads of the boundary protocol (see BoundaryLink), first byte is the kind:
+//   TRANSFER   kind, cars (unsigned short), south-bound flag
+//   AMBULANCE  kind
+//   STATE      kind, pheromone level (float), room (unsigned short), cars received so far (long)
+public final class BoundaryMessage {
+
+    public static final byte TRANSFER = 1;
+    public static final byte AMBULANCE = 2;
+    public static final byte STATE = 3;
+
+    public static final int TRANSFER_BYTES = 4;
+    public static final int AMBULANCE_BYTES = 1;
+    public static final int STATE_BYTES = 15;
+
+    private BoundaryMessage() {}
+
+    public static byte[] transfer(int cars, boolean southBound) {
+        int c = Math.min(0xFFFF, Math.max(0, cars));
+        return new byte[] {TRANSFER, (byte) (c >>> 8), (byte) c, (byte) (southBound ? 1 : 0)};
+    }
+
+    public static byte[] ambulance() {
+        return new byte[] {AMBULANCE};
+    }
+
+    public static byte[] state(double level, int room, long received) {
+        return ByteBuffer.allocate(STATE_BYTES).put(STATE).putFloat((float) level)
+                .putShort((short) Math.min(0xFFFF, Math.max(0, room))).putLong(received).array();
+    }
+
+    // 0 for anything that is not a well-formed boundary payload
+    public static int kind(byte[] payload) {
+        if (payload == null || payload.length == 0) return 0;
+        int expected = switch (payload[0]) {
+            case TRANSFER -> TRANSFER_BYTES;
+            case AMBULANCE -> AMBULANCE_BYTES;
+            case STATE -> STATE_BYTES;
+            default -> -1;
+        };
+        return payload.length == expected ? payload[0] : 0;
+    }
+
+    public static int cars(byte[] transfer) {
+        return (transfer[1] & 0xFF) << 8 | (transfer[2] & 0xFF);
+    }
+
+    public static boolean southBound(byte[] transfer) {
+        return transfer[3] != 0;
+    }
+
+    public static double level(byte[] state) {
+        return ByteBuffer.wrap(state).getFloat(1);
+    }
+
+    public static int room(byte[] state) {
+        return ByteBuffer.wrap(state).getShort(5) & 0xFFFF;
+    }
+
+    public static long received(byte[] state) {
+        return ByteBuffer.wrap(state).getLong(7);
+    }
+}
@@ -0,0 +1,19 @@
+package agents;
+
+// What an agent's SMART logic needs from a learner: pick an action for an encoded state
+// and learn from the outcome. RLBrain is the tabular version, LinearBrain approximates.
+public interface Brain {
+
+    enum Kind {
+        TABULAR, // one Q-value per (state, action), dense table
+        LINEAR   // tile-coded linear Q over raw queues, light and neighbour pressure
+    }
+
+    int chooseAction(int state);
+
+    void update(int prevState, int action, double reward, int newState);
+
+    double getEpsilon();
+
+    void printQTable(StateEncoder encoder);
+}
@@ -6,5 +6,6 @@ public enum Desire {
     PASS_EMERGENCY,
     PREVENT_GRIDLOCK,
     PREPARE_GREEN_WAVE,
+    FOLLOW_OFFSET_SCHEDULE,
     MANAGE_LOCAL_TRAFFIC
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package agents;
+
+// A trained Q-table compiled into a state -> action lookup for deployment: no exploration,
+// no learning and no Q-value scan per decision, and the same state always gets the same action.
+// runRLLogic's safety masking is baked in. The light is part of the state, and the one input
+// the state does not carry (NS queue above 30) picks one of two planes:
+//   actions[state << 1 | nsOverflow]
+public class FrozenPolicy {
+
+    // Above this NS queue a green NS phase is never switched away
+    public static final int NS_OVERFLOW = 30;
+
+    private final byte[] actions;
+
+    private FrozenPolicy(byte[] actions) {
+        this.actions = actions;
+    }
+
+    // Greedy action per state as the table stands now; unvisited states keep the greedy default
+    public static FrozenPolicy compile(QTable table, StateEncoder encoder) {
+        byte[] actions = new byte[table.getStateCount() << 1];
+        for (int state = 0; state < table.getStateCount(); state++) {
+            int greedy = table.greedyAction(state);
+            boolean greenNS = encoder.isGreenNS(state);
+            actions[state << 1] = (byte) mask(greedy, greenNS, false);
+            actions[state << 1 | 1] = (byte) mask(greedy, greenNS, true);
+        }
+        return new FrozenPolicy(actions);
+    }
+
+    // Same rules, same order as runRLLogic
+    static int mask(int action, boolean greenNS, boolean nsOverflow) {
+        if (!greenNS && action == RLBrain.ACTION_HOLD_LONG) action = RLBrain.ACTION_SWITCH;
+        if (greenNS && nsOverflow && action == RLBrain.ACTION_SWITCH) action = RLBrain.ACTION_HOLD_LONG;
+        return action;
+    }
+
+    public int action(int state, int queueNS) {
+        // 1 when queueNS > NS_OVERFLOW, without a branch
+        int overflow = (NS_OVERFLOW - queueNS) >>> 31;
+        return actions[state << 1 | overflow];
+    }
+
+    public int getStateCount() {
+        return actions.length >> 1;
+    }
+}
@@ -0,0 +1,48 @@
+package agents;
+
+import jade.core.Agent;
+import jade.core.behaviours.TickerBehaviour;
+import simulation.CityMap;
+import simulation.GreenWavePlanner;
+import simulation.TrafficNode;
+
+// Runs the green-wave planner over the intersections of this container and pushes each
+// changed offset schedule into the agent's mailbox. Plans only in COORD_GREEN_WAVE while
+// the simulation runs; a schedule that does not fit a full mailbox goes out on the next pass.
+public class GreenWaveCoordinator extends Agent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String NAME = "GreenWaveCoordinator";
+
+    private final int periodTicks;
+    private final GreenWavePlanner planner = new GreenWavePlanner(CityMap.getInstance().getStore());
+    private long ticks = 0;
+
+    public GreenWaveCoordinator(int periodTicks) {
+        this.periodTicks = Math.max(1, periodTicks);
+    }
+
+    @Override
+    protected void setup() {
+        CityMap map = CityMap.getInstance();
+        GreenWavePlanner.Listener push = (node, offset, greenNS, cycle) -> {
+            TrafficNode n = map.getIntersection(node);
+            Mailbox box = n == null ? null : LocalBus.lookup(n.getId());
+            if (box == null || !box.offer(Mailbox.OFFSET_SCHEDULE, offset, greenNS << 16 | cycle)) planner.invalidate(node);
+        };
+
+        addBehaviour(new TickerBehaviour(this, periodTicks * 1000L) {
+            @Override
+            protected void onTick() {
+                if (!map.isSimulationRunning() || map.getMode() != CityMap.Mode.COORD_GREEN_WAVE) return;
+                ticks += periodTicks;
+                try {
+                    planner.plan(ticks, push);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+}
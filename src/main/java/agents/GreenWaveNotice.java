@@ -0,0 +1,25 @@
+package agents;
+
+// Payload of a green-wave notice: how many cars the upstream neighbour handed over since
+// its last notice, and for how many more ticks it expects the platoon to keep coming.
+// Two unsigned shorts, big-endian; larger values saturate.
+public final class GreenWaveNotice {
+
+    public static final int BYTES = 4;
+
+    private GreenWaveNotice() {}
+
+    public static byte[] encode(int cars, int etaTicks) {
+        int c = Math.min(0xFFFF, Math.max(0, cars));
+        int e = Math.min(0xFFFF, Math.max(0, etaTicks));
+        return new byte[] {(byte) (c >>> 8), (byte) c, (byte) (e >>> 8), (byte) e};
+    }
+
+    public static int cars(byte[] payload) {
+        return (payload[0] & 0xFF) << 8 | (payload[1] & 0xFF);
+    }
+
+    public static int etaTicks(byte[] payload) {
+        return (payload[2] & 0xFF) << 8 | (payload[3] & 0xFF);
+    }
+}
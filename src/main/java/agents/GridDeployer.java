@@ -0,0 +1,131 @@
+package agents;
+
+import jade.core.Profile;
+import jade.core.ProfileImpl;
+import jade.core.Runtime;
+import jade.wrapper.AgentContainer;
+import jade.wrapper.AgentController;
+import simulation.CityMap;
+import simulation.GridLayout;
+import simulation.GridPartition;
+import simulation.StartupReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Boots a JADE container and creates one IntersectionAgent per grid node it owns.
+// Agents are instantiated directly and handed to the container in parallel, then
+// started together, instead of createNewAgent + start one by one.
+// The pheromone field is swept once per agent tick period on its own thread.
+//
+// Partitioned: each JVM deploys one band of rows (see GridPartition). Partition 0 boots the
+// main container, the others join it as peripheral containers; every partition also runs a
+// PartitionAgent that reports its own metrics.
+public class GridDeployer {
+
+    public static final int DEFAULT_PORT = 1099;
+    private static final long FIELD_PERIOD_MS = 1000;
+    private static ScheduledExecutorService fieldSweeper = null;
+    // Ticks between green-wave planning passes, 0 = reactive green wave only
+    private static int greenWavePlanPeriod = 0;
+
+    private GridDeployer() {}
+
+    public static void setGreenWavePlanPeriod(int ticks) {
+        greenWavePlanPeriod = ticks;
+    }
+
+    public static AgentContainer deploy(GridLayout layout, boolean jadeGui) throws Exception {
+        return deploy(new GridPartition(layout, 1), 0, "localhost", DEFAULT_PORT, jadeGui);
+    }
+
+    // mainHost / mainPort: where partition 0's main container runs (or will run, for partition 0)
+    public static AgentContainer deploy(GridPartition partition, int part, String mainHost, int mainPort,
+                                        boolean jadeGui) throws Exception {
+        GridLayout layout = partition.getLayout();
+        StartupReport report = new StartupReport();
+        CityMap.getInstance().setStartupReport(report);
+
+        Runtime rt = Runtime.instance();
+        Profile p = new ProfileImpl();
+        p.setParameter(Profile.MAIN_HOST, mainHost);
+        p.setParameter(Profile.MAIN_PORT, String.valueOf(mainPort));
+        AgentContainer mc;
+        if (part == 0) {
+            p.setParameter(Profile.GUI, String.valueOf(jadeGui));
+            mc = rt.createMainContainer(p);
+        } else {
+            p.setParameter(Profile.CONTAINER_NAME, GridPartition.containerName(part));
+            mc = rt.createAgentContainer(p);
+            if (mc == null) throw new IllegalStateException("No main container at " + mainHost + ":" + mainPort);
+        }
+        report.mark("container boot");
+        AgentMetrics.getInstance().register(part == 0 ? "Main-Container" : GridPartition.containerName(part));
+
+        int firstRow = partition.firstRow(part), endRow = partition.endRow(part);
+        int nodes = partition.size(part);
+        CityMap.getInstance().reserve(nodes);
+        report.expectFirstTicks(nodes);
+
+        int threads = Math.min(8, java.lang.Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<AgentController>> created = new ArrayList<>(nodes);
+            for (int row = firstRow; row < endRow; row++) {
+                for (int col = 0; col < layout.getCols(); col++) {
+                    String name = GridLayout.nodeName(row, col);
+                    Object[] args = partition.agentArguments(row, col);
+                    created.add(pool.submit(() -> {
+                        IntersectionAgent agent = new IntersectionAgent();
+                        agent.setArguments(args);
+                        return mc.acceptNewAgent(name, agent);
+                    }));
+                }
+            }
+            List<AgentController> controllers = new ArrayList<>(created.size());
+            for (Future<AgentController> f : created) controllers.add(f.get());
+            report.mark("agent creation");
+
+            List<Future<?>> started = new ArrayList<>(controllers.size());
+            for (AgentController ac : controllers) started.add(pool.submit(() -> { ac.start(); return null; }));
+            for (Future<?> f : started) f.get();
+            report.mark("agent start");
+        } finally {
+            pool.shutdown();
+        }
+        if (partition.getPartitions() > 1) {
+            System.out.println(GridPartition.containerName(part) + ": rows " + firstRow + ".." + (endRow - 1)
+                    + ", " + nodes + " intersections, " + partition.boundaryNodes(part) + " on the boundary");
+            mc.acceptNewAgent(PartitionAgent.nameOf(part),
+                    new PartitionAgent(part, partition.getPartitions(), partition.boundaryNodes(part))).start();
+        }
+        if (greenWavePlanPeriod > 0) {
+            mc.acceptNewAgent(GreenWaveCoordinator.NAME + (part == 0 ? "" : "_" + part),
+                    new GreenWaveCoordinator(greenWavePlanPeriod)).start();
+        }
+        startFieldSweeper();
+        return mc;
+    }
+
+    private static synchronized void startFieldSweeper() {
+        if (fieldSweeper != null) return;
+        fieldSweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pheromone-field");
+            t.setDaemon(true);
+            return t;
+        });
+        CityMap map = CityMap.getInstance();
+        fieldSweeper.scheduleAtFixedRate(() -> {
+            try {
+                if (map.isSimulationRunning()) map.getStore().getPheromoneField().sweep();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }, FIELD_PERIOD_MS, FIELD_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,98 @@
+package agents;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Properties;
+
+// Learning rates and state / reward shaping for the SMART brains. Immutable; with() gives a
+// modified copy, so sweeps can derive candidates from the defaults.
+// From a properties file (--learning-config) and/or --hyper key=value,key=value; unset keys
+// keep the defaults below.
+public final class Hyperparameters {
+
+    public static final String[] KEYS = {
+            "alpha", "gamma", "epsilon", "epsilonDecay", "epsilonMin",
+            "lightEdge", "mediumEdge", "nsWeight", "switchPenalty"
+    };
+
+    public static final Hyperparameters DEFAULTS = new Hyperparameters(new double[] {
+            0.2,   // alpha: learning rate
+            0.8,   // gamma: discount factor
+            0.15,  // epsilon: exploration rate
+            0.999, // epsilonDecay, per decision
+            0.01,  // epsilonMin
+            6,     // lightEdge: queues 1..6 are "light"
+            15,    // mediumEdge: queues 7..15 are "medium", above is "heavy"
+            2.0,   // nsWeight: extra penalty per waiting highway car
+            10.0   // switchPenalty: cost of a yellow phase
+    });
+
+    private final double[] values;
+
+    private Hyperparameters(double[] values) {
+        this.values = values;
+    }
+
+    public static Hyperparameters fromArgs(String[] args) throws IOException {
+        Hyperparameters h = DEFAULTS;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--learning-config")) {
+                Properties p = new Properties();
+                try (FileReader r = new FileReader(args[i + 1])) { p.load(r); }
+                for (String key : p.stringPropertyNames()) h = h.with(key, Double.parseDouble(p.getProperty(key)));
+            }
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--hyper")) h = h.with(args[i + 1]);
+        }
+        return h;
+    }
+
+    // "alpha=0.3,gamma=0.9"
+    public Hyperparameters with(String assignments) {
+        Hyperparameters h = this;
+        for (String pair : assignments.split(",")) {
+            String[] kv = pair.split("=");
+            if (kv.length != 2) throw new IllegalArgumentException("Expected key=value: " + pair);
+            h = h.with(kv[0].trim(), Double.parseDouble(kv[1].trim()));
+        }
+        return h;
+    }
+
+    public Hyperparameters with(String key, double value) {
+        double[] copy = values.clone();
+        copy[indexOf(key)] = value;
+        return new Hyperparameters(copy);
+    }
+
+    public double get(String key) {
+        return values[indexOf(key)];
+    }
+
+    private static int indexOf(String key) {
+        for (int k = 0; k < KEYS.length; k++) {
+            if (KEYS[k].equals(key)) return k;
+        }
+        throw new IllegalArgumentException("Unknown hyperparameter: " + key);
+    }
+
+    public double getAlpha() { return values[0]; }
+    public double getGamma() { return values[1]; }
+    public double getEpsilon() { return values[2]; }
+    public double getEpsilonDecay() { return values[3]; }
+    public double getEpsilonMin() { return values[4]; }
+    public int getLightEdge() { return (int) values[5]; }
+    public int getMediumEdge() { return (int) values[6]; }
+    public double getNsWeight() { return values[7]; }
+    public double getSwitchPenalty() { return values[8]; }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < KEYS.length; k++) {
+            if (k > 0) sb.append(',');
+            sb.append(KEYS[k]).append('=').append(values[k]);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,592 @@
+package agents;
+
+import simulation.CityMap;
+import simulation.NodeController;
+import simulation.RandomStreams;
+import simulation.TrafficNode;
+
+// BDI + RL logic of one intersection, independent of what drives it.
+// The JADE agent ticks it once per second, the headless engine as fast as the CPU allows.
+public class IntersectionController implements NodeController {
+
+    // How green wave notifications reach the downstream neighbour (see GreenWaveNotice), and
+    // how cars and the ambulance reach a neighbour that is not in our map (see BoundaryLink)
+    public interface Signals {
+        void greenWave(String target, int cars, int etaTicks);
+
+        // true if the neighbour takes the cars; without a boundary they just leave the grid
+        default boolean transfer(String target, int cars, boolean southBound) {
+            return true;
+        }
+
+        // true if the ambulance was handed over
+        default boolean ambulance(String target) {
+            return false;
+        }
+    }
+
+    // A notice covers at most this many ticks of platoon
+    private static final int MAX_NOTICE_ETA = 10;
+
+    private final String name;
+    private final CityMap map;
+    private final TrafficNode myIntersection;
+    private final Signals signals;
+
+    private final String southNeighbor;
+    private final String eastNeighbor;
+    // Local downstream nodes, resolved once their links exist; stay null for remote neighbours
+    private TrafficNode southNode, eastNode;
+    private int myQueueNS, myQueueEW;
+    private boolean isGreenNS;
+    private boolean greenWaveIncoming = false;
+    private double maxNeighborPheromone = 0.0;
+    private boolean sensorsBroken = false;
+    private boolean ambulanceApproaching = false;
+    private int greenLightThreshold = 10;
+    private int avgQueueHistory = 0;
+    private int learningTicks = 0;
+    private int minGreenTime = 0;
+    private int fixedCycleTimer = 0;
+
+    private final Brain rlBrain;
+    private final StateEncoder rlEncoder;
+    private final PolicyStore policies;
+    // Deploy-only: decisions come from the compiled table, nothing is learned
+    private FrozenPolicy frozenPolicy = null;
+    private int previousState = -1;
+    private int previousAction = -1;
+    private int rlActionTimer = 0;
+
+    // Learning curve of the current episode
+    private double rewardTotal = 0.0;
+    private int rewardSteps = 0;
+
+    private boolean wasRunning = false;
+    // JADE only: where the tick's time and decisions are recorded
+    private AgentProbe probe = null;
+    private String pendingTarget = null;
+    private int pendingCars = 0;
+    private boolean pendingSouthBound = false;
+
+    // Green-wave notices: announced platoon end as seen by us (receiver side), and per
+    // downstream neighbour (0 south, 1 east) the cars not yet announced and until when
+    // the last notice covers the flow (sender side)
+    private long greenWaveUntil = 0;
+    private final int[] unannouncedCars = new int[2];
+    private final long[] noticeCoversUntil = new long[2];
+
+    // Offset schedule from the green-wave planner (GreenWavePlanner), cycle 0 = none yet
+    private int scheduleOffset = 0;
+    private int scheduleGreenNS = 0;
+    private int scheduleCycle = 0;
+
+    // Side-street arrivals are a Bernoulli process per tick; the next one is pre-sampled
+    // so an idle node knows when it has to wake up
+    private static final double SIDE_ARRIVAL_PROB = 0.05;
+    private static final double LOG_NO_SIDE_ARRIVAL = Math.log(1.0 - SIDE_ARRIVAL_PROB);
+    private final boolean sourceRow;
+    private long nextSideArrival = 0;
+
+    // south / east are the downstream neighbours' names, null at the edge of the grid
+    public IntersectionController(String name, TrafficNode node, String south, String east, Signals signals) {
+        this(name, node, south, east, signals, QTableRegistry.getInstance(), PolicyStore.getInstance());
+    }
+
+    // Offline tools give each grid copy its own tables and checkpoints
+    public IntersectionController(String name, TrafficNode node, String south, String east, Signals signals,
+                                  QTableRegistry tables, PolicyStore policies) {
+        this.name = name;
+        this.map = node.getMap();
+        this.policies = policies;
+        this.myIntersection = node;
+        this.signals = signals;
+        this.southNeighbor = south;
+        this.eastNeighbor = east;
+        // Highway traffic enters the grid on row 0
+        String[] parts = name.split("_");
+        int row = Integer.parseInt(parts[1]);
+        int col = Integer.parseInt(parts[2]);
+        this.sourceRow = row == 0;
+
+        // Roads meeting here: upstream ones exist away from the top / left edge
+        int degree = (row > 0 ? 1 : 0) + (col > 0 ? 1 : 0) + (south != null ? 1 : 0) + (east != null ? 1 : 0);
+        this.rlEncoder = tables.newEncoder(node.getMaxCapacity());
+        long explorationSeed = RandomStreams.seed(map.getSeed(), name, RandomStreams.EXPLORATION);
+        boolean restored = false;
+        if (tables.getBrain() == Brain.Kind.LINEAR) {
+            this.rlBrain = new LinearBrain((RawStateEncoder) rlEncoder, explorationSeed, tables.getHyperparameters());
+        } else {
+            QTable table = tables.tableFor(name, row, degree, rlEncoder.getStateCount());
+            RLBrain tabular = new RLBrain(table, explorationSeed, tables.getHyperparameters());
+            tabular.setReplay(tables.replayFor(RandomStreams.seed(map.getSeed(), name, RandomStreams.REPLAY)));
+            restored = policies.register(name, tabular);
+            this.rlBrain = tabular;
+        }
+        if (policies.isFrozen()) {
+            if (restored) freezePolicy();
+            else policies.reportUnfrozen(name);
+        }
+    }
+
+    @Override
+    public int nodeId() {
+        return myIntersection.getIndex();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TrafficNode getNode() {
+        return myIntersection;
+    }
+
+    public Brain getBrain() {
+        return rlBrain;
+    }
+
+    // Compiles the Q-table as it stands into a fixed policy and stops learning
+    public void freezePolicy() {
+        if (rlBrain instanceof RLBrain tabular) {
+            frozenPolicy = FrozenPolicy.compile(tabular.getTable(), rlEncoder);
+        } else {
+            System.out.println(name + ": only tabular policies can be frozen, still learning");
+        }
+    }
+
+    public boolean isPolicyFrozen() {
+        return frozenPolicy != null;
+    }
+
+    // NS green while (clock - offset) mod cycle < greenNS
+    public void onOffsetSchedule(int offset, int greenNS, int cycle) {
+        scheduleOffset = offset;
+        scheduleGreenNS = greenNS;
+        scheduleCycle = cycle;
+    }
+
+    private boolean scheduledGreenNS() {
+        return Math.floorMod(myIntersection.getClock() - scheduleOffset, scheduleCycle) < scheduleGreenNS;
+    }
+
+    // Called when an upstream neighbour announces a platoon; it keeps coming for etaTicks
+    public void onGreenWaveIncoming(int cars, int etaTicks) {
+        greenWaveIncoming = true;
+        greenWaveUntil = Math.max(greenWaveUntil, myIntersection.getClock() + etaTicks);
+    }
+
+    // Notices posted to the store by co-stepped senders (engine), picked up in our own decide phase
+    private void takePostedGreenWave() {
+        int until = myIntersection.takeGreenWave();
+        if (until == 0) return;
+        greenWaveIncoming = true;
+        greenWaveUntil = Math.max(greenWaveUntil, until);
+    }
+
+    @Override
+    public void tick() {
+        boolean stopped = wasRunning && !map.isSimulationRunning();
+        beginTick();
+        if (stopped) endRun(true);
+        if (!map.isSimulationRunning()) return;
+        long start = probe == null ? 0 : System.nanoTime();
+        physics();
+        if (myIntersection.deliverOutflow()) afterTransfer(myIntersection.isOutflowAccepted());
+        if (probe != null) probe.section(AgentProbe.Section.PHYSICS, System.nanoTime() - start);
+        decide();
+    }
+
+    @Override
+    public void endRun(boolean printTable) {
+        if (map.getMode() != CityMap.Mode.SMART) return;
+        if (printTable) {
+            System.out.println("Printing Q-Table for agent: " + name);
+            rlBrain.printQTable(rlEncoder);
+        }
+        policies.onRunStopped();
+    }
+
+    public void setProbe(AgentProbe probe) {
+        this.probe = probe;
+    }
+
+    @Override
+    public void beginTick() {
+        boolean isRunning = map.isSimulationRunning();
+        if (!wasRunning && isRunning) policies.onRunStarted();
+        wasRunning = isRunning;
+
+        if (myIntersection.checkAndClearReset()) resetBeliefs();
+        if (!isRunning) return;
+
+        myIntersection.advanceClock(1);
+        if (minGreenTime > 0) minGreenTime--;
+        if (fixedCycleTimer > 0) fixedCycleTimer--;
+        if (rlActionTimer > 0) rlActionTimer--;
+    }
+
+    @Override
+    public void physics() {
+        if (map.getMode() == CityMap.Mode.LEARNING_ONLY) adaptStrategy();
+
+        // Traffic generation
+        long clock = myIntersection.getClock();
+        if (sourceRow) {
+            myIntersection.generateTrafficFlow();
+        } else {
+            if (nextSideArrival == 0) nextSideArrival = clock - 1 + sampleArrivalGap();
+            if (clock >= nextSideArrival) {
+                myIntersection.addCarsEastWest(1);
+                nextSideArrival = clock + sampleArrivalGap();
+            }
+        }
+
+        // Physics
+        boolean hadAmbulance = myIntersection.hasAmbulance();
+        int carsPassed = myIntersection.processFlow();
+        boolean hasAmbulanceNow = myIntersection.hasAmbulance();
+
+        if (southNode == null && southNeighbor != null) southNode = myIntersection.getSouth();
+        if (eastNode == null && eastNeighbor != null) eastNode = myIntersection.getEast();
+
+        if (hadAmbulance && !hasAmbulanceNow) {
+            if (southNode != null) myIntersection.postAmbulance(southNode);
+            else if (southNeighbor == null || !signals.ambulance(southNeighbor)) map.stopAmbulanceTimer();
+        }
+
+        pendingTarget = null;
+        if (carsPassed > 0) {
+            if (myIntersection.isNsGreen()) {
+                if (southNeighbor != null) sendCarsTo(southNeighbor, southNode, carsPassed, true);
+            } else {
+                if (eastNeighbor != null) sendCarsTo(eastNeighbor, eastNode, carsPassed, false);
+            }
+        }
+    }
+
+    @Override
+    public void afterTransfer(boolean accepted) {
+        if (accepted && pendingTarget != null) {
+            CityMap.Mode mode = map.getMode();
+            if (mode == CityMap.Mode.COORD_GREEN_WAVE
+                    || (mode == CityMap.Mode.SMART && rlEncoder.usesNeighborSignals())) announce();
+        }
+        pendingTarget = null;
+    }
+
+    // One notice per platoon instead of one per transfer: while the last notice still covers
+    // the flow, handed-over cars are only counted and go out with the next notice
+    private void announce() {
+        int dir = pendingSouthBound ? 0 : 1;
+        MessageStats.recordTransfer();
+        unannouncedCars[dir] += pendingCars;
+        long now = myIntersection.getClock();
+        if (now < noticeCoversUntil[dir]) return;
+
+        // The platoon lasts while our queue toward the neighbour drains at this tick's rate
+        int behind = pendingSouthBound ? myIntersection.getQueueNS() : myIntersection.getQueueEW();
+        int eta = Math.max(1, Math.min(MAX_NOTICE_ETA, (behind + pendingCars - 1) / pendingCars));
+        signals.greenWave(pendingTarget, unannouncedCars[dir], eta);
+        unannouncedCars[dir] = 0;
+        noticeCoversUntil[dir] = now + eta;
+    }
+
+    @Override
+    public void decide() {
+        long start = probe == null ? 0 : System.nanoTime();
+        updateBeliefs();
+        long believed = probe == null ? 0 : System.nanoTime();
+
+        CityMap.Mode mode = map.getMode();
+
+        if (mode == CityMap.Mode.SMART) {
+            runRLLogic();
+        } else {
+            Desire desire = deliberate(mode);
+            if (probe != null) probe.desire(desire);
+            Intention intention = plan(desire);
+            execute(intention);
+        }
+
+        if (probe != null) {
+            probe.section(AgentProbe.Section.BELIEFS, believed - start);
+            probe.section(mode == CityMap.Mode.SMART ? AgentProbe.Section.RL_LOGIC : AgentProbe.Section.DELIBERATION,
+                    System.nanoTime() - believed);
+        }
+    }
+
+    // Ticks until the next side-street arrival (geometric, >= 1)
+    private long sampleArrivalGap() {
+        return 1 + (long) Math.floor(Math.log(1.0 - myIntersection.nextArrivalDouble()) / LOG_NO_SIDE_ARRIVAL);
+    }
+
+    // Nothing can happen here until a timer expires, a car arrives or a neighbour wakes us
+    private boolean isIdle() {
+        return !sourceRow
+                && myQueueNS == 0 && myQueueEW == 0
+                && !myIntersection.isInTransition()
+                && !greenWaveIncoming && !ambulanceApproaching && !sensorsBroken
+                && myIntersection.getPheromoneLevel() == 0.0;
+    }
+
+    @Override
+    public long nextWakeTick(long now) {
+        if (!isIdle()) return now + 1;
+
+        long wake = now + Math.max(1, nextSideArrival - myIntersection.getClock());
+        CityMap.Mode mode = map.getMode();
+        if (mode == CityMap.Mode.BASELINE_FIXED) wake = Math.min(wake, now + Math.max(1, fixedCycleTimer));
+        if (mode == CityMap.Mode.SMART) wake = Math.min(wake, now + Math.max(1, rlActionTimer));
+        if (mode == CityMap.Mode.COORD_GREEN_WAVE && scheduleCycle > 0) {
+            wake = Math.min(wake, now + ticksToScheduleBoundary());
+            // A switch the schedule asked for waits out the minimum green
+            if (minGreenTime > 0) wake = Math.min(wake, now + minGreenTime);
+        }
+        return wake;
+    }
+
+    // Ticks until the schedule next flips the light: (clock - offset) mod cycle reaching greenNS or 0
+    private int ticksToScheduleBoundary() {
+        int phase = Math.floorMod(myIntersection.getClock() - scheduleOffset, scheduleCycle);
+        return phase < scheduleGreenNS ? scheduleGreenNS - phase : scheduleCycle - phase;
+    }
+
+    @Override
+    public void catchUp(long skippedTicks) {
+        myIntersection.advanceClock((int) skippedTicks);
+        minGreenTime = (int) Math.max(0, minGreenTime - skippedTicks);
+        fixedCycleTimer = (int) Math.max(0, fixedCycleTimer - skippedTicks);
+        rlActionTimer = (int) Math.max(0, rlActionTimer - skippedTicks);
+
+        // Each skipped tick would have fed an empty queue into the learning window
+        if (map.getMode() == CityMap.Mode.LEARNING_ONLY) {
+            for (long i = 0; i < skippedTicks; i++) adaptStrategy();
+        }
+    }
+
+    private void updateBeliefs() {
+        takePostedGreenWave();
+        // An announced platoon is still arriving
+        if (myIntersection.getClock() < greenWaveUntil) greenWaveIncoming = true;
+
+        //Stigmergy: the field sweep already reduced the neighbourhood to one value
+        maxNeighborPheromone = myIntersection.getNeighborPheromone();
+
+        // Get world information
+        myQueueNS = myIntersection.getQueueNS();
+        myQueueEW = myIntersection.getQueueEW();
+        isGreenNS = myIntersection.isNsGreen();
+        sensorsBroken = (myQueueNS == -1 || myQueueEW == -1);
+        ambulanceApproaching = myIntersection.hasAmbulance();
+    }
+
+    private void sendCarsTo(String target, TrafficNode node, int amount, boolean isSouthBound) {
+        if (node != null) {
+            myIntersection.postOutflow(node, amount, isSouthBound);
+        } else {
+            // Owned by another partition
+            myIntersection.postRemoteOutflow(amount, isSouthBound, signals.transfer(target, amount, isSouthBound));
+        }
+        pendingTarget = target;
+        pendingCars = amount;
+        pendingSouthBound = isSouthBound;
+    }
+
+
+    private void runRLLogic() {
+        if (ambulanceApproaching) {
+            rlActionTimer = 0;
+            if (isGreenNS) execute(Intention.KEEP_CURRENT_PHASE);
+            else execute(Intention.SWITCH_PHASE);
+            return;
+        }
+
+        if (rlActionTimer > 0) {
+            execute(Intention.KEEP_CURRENT_PHASE);
+            return;
+        }
+
+        int currentState = rlEncoder.encodeState(myQueueNS, myQueueEW, isGreenNS, myIntersection.isInTransition(),
+                maxNeighborPheromone, greenWaveIncoming);
+        // An announced platoon is part of one decision's state
+        greenWaveIncoming = false;
+        int action = frozenPolicy != null ? frozenPolicy.action(currentState, myQueueNS) : learnAndChoose(currentState);
+
+        Intention intention;
+
+        if (action == RLBrain.ACTION_SWITCH) {
+            intention = Intention.SWITCH_PHASE;
+            rlActionTimer = 0;
+        } else if (action == RLBrain.ACTION_HOLD_SHORT) {
+            intention = Intention.KEEP_CURRENT_PHASE;
+            rlActionTimer = 5;
+        } else {
+            intention = Intention.KEEP_CURRENT_PHASE;
+            rlActionTimer = 20;
+        }
+
+        if (myIntersection.isInTransition())
+            intention = Intention.KEEP_CURRENT_PHASE;
+        execute(intention);
+
+        previousState = currentState;
+        previousAction = action;
+    }
+
+    // Learns from the last decision, then picks the next action (safety-masked)
+    private int learnAndChoose(int currentState) {
+        if (previousState != -1) {
+            boolean didSwitch = (previousAction == RLBrain.ACTION_SWITCH);
+            double reward = rlEncoder.calculateReward(myQueueNS, myQueueEW, didSwitch);
+            rlBrain.update(previousState, previousAction, reward, currentState);
+            rewardTotal += reward;
+            rewardSteps++;
+        }
+
+        int action = rlBrain.chooseAction(currentState);
+
+        // Safety Masking
+        return FrozenPolicy.mask(action, isGreenNS, myQueueNS > FrozenPolicy.NS_OVERFLOW);
+    }
+
+    private Desire deliberate(CityMap.Mode mode) {
+        if (ambulanceApproaching) return Desire.PASS_EMERGENCY;
+
+        if (mode == CityMap.Mode.BASELINE_FIXED) return Desire.FIXED_CYCLE;
+
+        if (sensorsBroken) return Desire.FAIL_SAFE_MODE;
+
+        boolean useGW = (mode == CityMap.Mode.COORD_GREEN_WAVE);
+        boolean useStig = (mode == CityMap.Mode.COORD_STIGMERGY);
+        int myMaxQueue = Math.max(myQueueNS, myQueueEW);
+
+        if (useStig && maxNeighborPheromone > 8.0 && myMaxQueue < 4) return Desire.PREVENT_GRIDLOCK;
+        if (useGW && scheduleCycle > 0) return Desire.FOLLOW_OFFSET_SCHEDULE;
+        if (useGW && greenWaveIncoming && myMaxQueue < 15) return Desire.PREPARE_GREEN_WAVE;
+
+        return Desire.MANAGE_LOCAL_TRAFFIC;
+    }
+
+    private Intention plan(Desire desire) {
+        if (desire == Desire.PASS_EMERGENCY) {
+            // Ambulance is always NS.
+            // If Green is NS, KEEP IT. If Green is EW, switch.
+            if (isGreenNS) return Intention.KEEP_CURRENT_PHASE;
+            else return Intention.SWITCH_PHASE;
+        }
+
+        if (desire == Desire.FIXED_CYCLE || desire == Desire.FAIL_SAFE_MODE) {
+            if (fixedCycleTimer <= 0) return Intention.SWITCH_PHASE;
+            return Intention.KEEP_CURRENT_PHASE;
+        }
+
+        //It's yellow
+        if (myIntersection.isInTransition()) return Intention.KEEP_CURRENT_PHASE;
+
+        if (minGreenTime > 0) return Intention.KEEP_CURRENT_PHASE;
+
+        // 3. Gridlock / Green Wave
+        if (desire == Desire.PREVENT_GRIDLOCK) return isGreenNS ? Intention.KEEP_CURRENT_PHASE : Intention.SWITCH_PHASE;
+
+        if (desire == Desire.FOLLOW_OFFSET_SCHEDULE) {
+            boolean wantNS = scheduledGreenNS();
+            // Nobody waiting on the scheduled side: serve the other one until its platoon shows up
+            if (wantNS && myQueueNS == 0 && myQueueEW > 0) wantNS = false;
+            else if (!wantNS && myQueueEW == 0 && myQueueNS > 0) wantNS = true;
+            return wantNS == isGreenNS ? Intention.KEEP_CURRENT_PHASE : Intention.SWITCH_PHASE;
+        }
+
+        if (desire == Desire.PREPARE_GREEN_WAVE) {
+            if (isGreenNS) {
+                greenWaveIncoming = false;
+                return Intention.SWITCH_PHASE;
+            }
+            else {
+                greenLightThreshold += 20;
+                greenWaveIncoming = false;
+            }
+        }
+
+        boolean switchNeeded = false;
+        int effectiveThreshold = greenLightThreshold;
+        if (isGreenNS) {
+            if (myQueueEW > effectiveThreshold) switchNeeded = true;
+            if (myQueueNS == 0 && myQueueEW > 0) switchNeeded = true;
+        } else {
+            if (myQueueNS > effectiveThreshold) switchNeeded = true;
+            if (myQueueEW == 0 && myQueueNS > 0) switchNeeded = true;
+        }
+        return switchNeeded ? Intention.SWITCH_PHASE : Intention.KEEP_CURRENT_PHASE;
+    }
+
+    private void execute(Intention intention) {
+        if (probe != null) probe.intention(intention);
+        if (intention == Intention.SWITCH_PHASE) {
+            myIntersection.switchLight();
+            minGreenTime = 4;
+            fixedCycleTimer = 15;
+        }
+    }
+
+    private void adaptStrategy() {
+        if (sensorsBroken) return;
+        int totalQ = myQueueNS + myQueueEW;
+        avgQueueHistory += totalQ;
+        learningTicks++;
+        if (learningTicks >= 10) {
+            double avg = avgQueueHistory / 10.0;
+            if (avg > 12) greenLightThreshold += 2;
+            else if (avg > 8) greenLightThreshold += 1;
+            else if (avg < 4) greenLightThreshold -= 2;
+            else greenLightThreshold -= 1;
+            greenLightThreshold = Math.max(5, Math.min(20, greenLightThreshold));
+            myIntersection.setThreshold(greenLightThreshold);
+            avgQueueHistory = 0;
+            learningTicks = 0;
+        }
+    }
+
+    // Training: puts the intersection back to an empty road without a reset broadcast,
+    // keeping what the brain has learned. Runs on the owning thread, so the reset applies now
+    public void startEpisode() {
+        myIntersection.reset();
+        myIntersection.checkAndClearReset();
+        clearBeliefs();
+        rewardTotal = 0.0;
+        rewardSteps = 0;
+    }
+
+    public double getRewardTotal() {
+        return rewardTotal;
+    }
+
+    public int getRewardSteps() {
+        return rewardSteps;
+    }
+
+    private void resetBeliefs() {
+        clearBeliefs();
+        System.out.println(name + " reset.");
+    }
+
+    private void clearBeliefs() {
+        greenLightThreshold = 10;
+        myIntersection.setThreshold(10);
+        minGreenTime = 0;
+        fixedCycleTimer = 0;
+        avgQueueHistory = 0;
+        learningTicks = 0;
+        greenWaveIncoming = false;
+        greenWaveUntil = 0;
+        unannouncedCars[0] = unannouncedCars[1] = 0;
+        noticeCoversUntil[0] = noticeCoversUntil[1] = 0;
+        maxNeighborPheromone = 0.0;
+        sensorsBroken = false;
+        ambulanceApproaching = false;
+        previousState = -1;
+        previousAction = -1;
+        rlActionTimer = 0;
+        nextSideArrival = 0;
+    }
+}
@@ -0,0 +1,144 @@
+package agents;
+
+import java.util.SplittableRandom;
+
+// Linear Q-learning over tile-coded raw features, for states too rich for a table.
+// Each of TILINGS offset grids cuts (NS queue, EW queue, neighbour pheromone) into coarse
+// tiles, one grid per combination of light / transition / green wave. A state activates one
+// tile per tiling; Q(s,a) is the sum of those tiles' weights for a, so nearby queue lengths
+// share what they learn. Tiles are hashed into HASHED_TILES slots of one flat float[],
+// tile-major like QTable: an agent only visits a small part of the tile space, so collisions
+// are rare and a brain stays 12 KB whatever the road capacity.
+// States come from RawStateEncoder. Nothing is allocated after construction.
+public class LinearBrain implements Brain {
+
+    public static final int TILINGS = 8;
+    private static final int QUEUE_TILE = 4;     // cars
+    private static final int PHEROMONE_TILE = 5; // half-units, i.e. 2.5 pheromone
+    private static final int PHEROMONE_HALVES = 20;
+    private static final int HASHED_TILES = 1024; // power of two
+
+    private double alpha;
+    private double gamma;
+    private double epsilon;
+    private double epsilonDecay;
+    private double epsilonMin;
+
+    private final int maxQueue;
+    private final float[] weights;
+    private final SplittableRandom rnd;
+
+    // Active tiles of the last two states looked at
+    private final int[] active = new int[TILINGS];
+    private final int[] activeNext = new int[TILINGS];
+    private long updates = 0;
+
+    public LinearBrain(RawStateEncoder encoder, long seed, Hyperparameters params) {
+        this.maxQueue = encoder.getMaxQueue();
+        this.weights = new float[HASHED_TILES * RLBrain.ACTION_COUNT];
+        this.rnd = new SplittableRandom(seed);
+        this.alpha = params.getAlpha();
+        this.gamma = params.getGamma();
+        this.epsilon = params.getEpsilon();
+        this.epsilonDecay = params.getEpsilonDecay();
+        this.epsilonMin = params.getEpsilonMin();
+    }
+
+    // Tiling t is shifted by (1, 3, 5) * t / TILINGS of a tile along the three axes;
+    // the tile's coordinates are then hashed to its slot
+    private void activeTiles(int state, int[] out) {
+        int ns = Math.max(0, RawStateEncoder.queueNS(state));
+        int ew = Math.max(0, RawStateEncoder.queueEW(state));
+        int ph = Math.min(PHEROMONE_HALVES, RawStateEncoder.pheromoneHalves(state));
+        int context = RawStateEncoder.flags(state);
+        for (int t = 0; t < TILINGS; t++) {
+            int iNS = (ns * TILINGS + (t % TILINGS) * QUEUE_TILE) / (QUEUE_TILE * TILINGS);
+            int iEW = (ew * TILINGS + (3 * t % TILINGS) * QUEUE_TILE) / (QUEUE_TILE * TILINGS);
+            int iPh = (ph * TILINGS + (5 * t % TILINGS) * PHEROMONE_TILE) / (PHEROMONE_TILE * TILINGS);
+            int h = (((t * 31 + context) * 31 + iNS) * 31 + iEW) * 31 + iPh;
+            h *= 0x9E3779B1;
+            out[t] = (h ^ (h >>> 16)) & (HASHED_TILES - 1);
+        }
+    }
+
+    private double q(int[] tiles, int action) {
+        double sum = 0;
+        for (int t = 0; t < TILINGS; t++) sum += weights[tiles[t] * RLBrain.ACTION_COUNT + action];
+        return sum;
+    }
+
+    private int greedy(int[] tiles) {
+        int best = 0;
+        double bestQ = q(tiles, 0);
+        for (int a = 1; a < RLBrain.ACTION_COUNT; a++) {
+            double v = q(tiles, a);
+            if (v > bestQ) {
+                bestQ = v;
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int chooseAction(int state) {
+        if (epsilon > epsilonMin) epsilon *= epsilonDecay;
+        if (rnd.nextDouble() < epsilon) return rnd.nextInt(RLBrain.ACTION_COUNT);
+        activeTiles(state, active);
+        return greedy(active);
+    }
+
+    // Semi-gradient Q-learning; the step is split across the active tiles
+    @Override
+    public void update(int prevState, int action, double reward, int newState) {
+        activeTiles(newState, activeNext);
+        double maxNext = q(activeNext, greedy(activeNext));
+
+        activeTiles(prevState, active);
+        double delta = reward + gamma * maxNext - q(active, action);
+        float step = (float) (alpha / TILINGS * delta);
+        for (int t = 0; t < TILINGS; t++) weights[active[t] * RLBrain.ACTION_COUNT + action] += step;
+        updates++;
+    }
+
+    @Override
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public int getWeightCount() {
+        return weights.length;
+    }
+
+    // Greedy action over a queue grid, per light, with quiet neighbours
+    @Override
+    public void printQTable(StateEncoder encoder) {
+        int touched = 0;
+        for (float w : weights) if (w != 0f) touched++;
+        System.out.printf("%nFINAL LINEAR Q REPORT (%d tilings, %d weights, %d non-zero, %d updates, epsilon %.3f)%n",
+                TILINGS, weights.length, touched, updates, epsilon);
+        int step = Math.max(1, maxQueue / 5);
+        for (int light = 1; light >= 0; light--) {
+            System.out.println(light == 1 ? "GREEN_NS  (rows NS queue, columns EW queue)" : "GREEN_EW");
+            for (int ns = 0; ns <= maxQueue; ns += step) {
+                StringBuilder row = new StringBuilder(String.format("  NS %3d |", ns));
+                for (int ew = 0; ew <= maxQueue; ew += step) {
+                    activeTiles(encoder.encodeState(ns, ew, light == 1, false, 0.0, false), active);
+                    row.append(String.format(" %-8s", actionToText(greedy(active))));
+                }
+                System.out.println(row);
+            }
+        }
+        System.out.println("----------------------------\n");
+    }
+
+    private static String actionToText(int a) {
+        if (a == 0) return "SWITCH";
+        if (a == 1) return "HOLD_5s";
+        return "HOLD_20s";
+    }
+}
@@ -0,0 +1,31 @@
+package agents;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Mailboxes of the agents living in this JVM, by local name. A sender finds a co-located
+// receiver here and writes straight into its ring; a name that is not registered lives
+// in another JVM (or is gone) and is reached over JADE instead.
+public final class LocalBus {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private LocalBus() {}
+
+    public static Mailbox register(String agent, int capacity) {
+        Mailbox box = new Mailbox(capacity);
+        mailboxes.put(agent, box);
+        return box;
+    }
+
+    public static void unregister(String agent) {
+        mailboxes.remove(agent);
+    }
+
+    // null when the agent is not in this JVM
+    public static Mailbox lookup(String agent) {
+        return mailboxes.get(agent);
+    }
+}
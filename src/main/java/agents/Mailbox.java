@@ -0,0 +1,77 @@
+package agents;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded many-producer / single-consumer ring of coordination signals for one agent.
+// A signal is (kind, a, b) packed into one long slot, so nothing is serialized or allocated
+// on either side. Each slot has a sequence number: producers claim a position with one CAS on
+// the tail and publish by releasing the sequence; the owner drains without locks.
+public class Mailbox {
+
+    public static final int GREEN_WAVE = 1; // a = cars, b = ETA ticks
+    public static final int OFFSET_SCHEDULE = 2; // a = offset, b = greenNS << 16 | cycle
+
+    // Receives drained signals on the owner's thread
+    public interface Handler {
+        void onSignal(int kind, int a, int b);
+    }
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] slots;
+    private final long[] sequence;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // owner only
+
+    public Mailbox(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new long[size];
+        this.sequence = new long[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequence[i] = i;
+    }
+
+    // False when full; the caller decides how else to deliver
+    public boolean offer(int kind, int a, int b) {
+        long t;
+        while (true) {
+            t = tail.get();
+            long seq = (long) LONGS.getAcquire(sequence, (int) (t & mask));
+            if (seq == t) {
+                if (tail.compareAndSet(t, t + 1)) break;
+            } else if (seq < t) {
+                return false;
+            }
+        }
+        int k = (int) (t & mask);
+        slots[k] = (long) kind << 56 | (long) (a & 0xFFFFFF) << 32 | (b & 0xFFFFFFFFL);
+        LONGS.setRelease(sequence, k, t + 1);
+        return true;
+    }
+
+    // Owner thread only; returns the number of signals handled
+    public int drain(Handler handler) {
+        int n = 0;
+        while (true) {
+            int k = (int) (head & mask);
+            if ((long) LONGS.getAcquire(sequence, k) != head + 1) return n;
+            long s = slots[k];
+            LONGS.setRelease(sequence, k, head + slots.length);
+            head++;
+            n++;
+            handler.onSignal((int) (s >>> 56), (int) (s >>> 32) & 0xFFFFFF, (int) s);
+        }
+    }
+
+    // Signals waiting; approximate while producers are active
+    public int depth() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -1,24 +1,55 @@
 package agents;
 
-public class MicroStateEncoder {
+import simulation.NodeStore;
+
+public class MicroStateEncoder implements StateEncoder {
+
+    // Bits 3-4 NS bucket, bits 1-2 EW bucket, bit 0 light (the layout saved Q-tables use)
+    public static final int STATE_COUNT = 32;
+
+    // Reward weights
+    private final double nsWeight;
+    private final double switchPenalty;
+
+    // Queue length -> Empty / Light / Medium / Heavy
+    private final byte[] buckets;
 
     public MicroStateEncoder() {
+        this(Hyperparameters.DEFAULTS, NodeStore.DEFAULT_MAX_CAPACITY);
+    }
+
+    public MicroStateEncoder(Hyperparameters params, int maxCapacity) {
+        this.nsWeight = params.getNsWeight();
+        this.switchPenalty = params.getSwitchPenalty();
+        // A broken sensor (-1) reads as Light, as the old if-chain had it
+        this.buckets = StateEncoder.bucketTable(new int[] {0, params.getLightEdge(), params.getMediumEdge()},
+                Math.max(maxCapacity, params.getMediumEdge() + 1));
+        buckets[0] = 1;
+    }
+
+    // Every state encodeState can return is below this
+    @Override
+    public int getStateCount() {
+        return STATE_COUNT;
+    }
+
+    // Light bit of an encoded state
+    @Override
+    public boolean isGreenNS(int state) {
+        return (state & 1) == 1;
+    }
+
+    // Local view only; the neighbour features are ignored
+    @Override
+    public int encodeState(int qNS, int qEW, boolean greenNS, boolean inTransition,
+                           double neighborPheromone, boolean greenWaveIncoming) {
+        return encodeState(qNS, qEW, greenNS);
     }
 
     public int encodeState(int qNS, int qEW, boolean greenNS) {
-        // Define NS traffic weight
-        int bucketNS;
-        if (qNS == 0) bucketNS = 0;       // Empty
-        else if (qNS <= 6) bucketNS = 1;  // Light
-        else if (qNS <= 15) bucketNS = 2; // Medium
-        else bucketNS = 3;                // Heavy
-
-        // Define EW traffic weight
-        int bucketEW;
-        if (qEW == 0) bucketEW = 0;
-        else if (qEW <= 6) bucketEW = 1;
-        else if (qEW <= 15) bucketEW = 2;
-        else bucketEW = 3;
+        // Traffic weight: 0 Empty, 1 Light, 2 Medium, 3 Heavy
+        int bucketNS = StateEncoder.bucket(buckets, qNS);
+        int bucketEW = StateEncoder.bucket(buckets, qEW);
 
         // Light Status
         int light = greenNS ? 1 : 0;
@@ -27,17 +58,34 @@ public class MicroStateEncoder {
         return (bucketNS << 3) | (bucketEW << 1) | light;
     }
 
+    @Override
     public double calculateReward(int qNS, int qEW, boolean didSwitch) {
         // Base penalty: total cars waiting
         double reward = -(qNS + qEW);
 
-        // Extra penalty: If Highway is blocked, it hurts 2x more
-        if (qNS > 0) reward -= (qNS * 2.0);
+        // Extra penalty: If Highway is blocked, it hurts (1 + nsWeight)x more
+        if (qNS > 0) reward -= (qNS * nsWeight);
 
         // Switching cost (Yellow light penalty)
         // To prevent agent from flickering the lights too fast
-        if (didSwitch) reward -= 10.0;
+        if (didSwitch) reward -= switchPenalty;
 
         return reward;
     }
-}
\ No newline at end of file
+
+    @Override
+    public String describe(int state) {
+        // Decode state
+        int bucketNS = (state >> 3) & 0b11;
+        int bucketEW = (state >> 1) & 0b11;
+        String lightStr = isGreenNS(state) ? "GREEN_NS" : "GREEN_EW";
+        return String.format("NS:%-6s | EW:%-6s | %-8s", bucketToText(bucketNS), bucketToText(bucketEW), lightStr);
+    }
+
+    static String bucketToText(int b) {
+        if (b == 0) return "Empty";
+        if (b == 1) return "Light";
+        if (b == 2) return "Med";
+        return "HEAVY";
+    }
+}
@@ -0,0 +1,63 @@
+package agents;
+
+// MicroStateEncoder's view plus what the agent knows about its surroundings:
+// 6 queue buckets per approach (the 0 / light / medium edges split in half), the yellow
+// transition, the east neighbour's pheromone (none / some / gridlock-level) and whether
+// an upstream platoon was announced since the last decision.
+// Mixed radix, light in the lowest digit: 6 x 6 x 3 x 2 x 2 x 2 = 864 states.
+public class NeighborStateEncoder extends MicroStateEncoder {
+
+    private static final int QUEUE_BUCKETS = 6;
+    private static final int PHEROMONE_BUCKETS = 3;
+    public static final int STATE_COUNT = QUEUE_BUCKETS * QUEUE_BUCKETS * PHEROMONE_BUCKETS * 2 * 2 * 2;
+
+    // Same level the coordinated modes treat as a neighbour about to gridlock
+    private static final double HIGH_PHEROMONE = 8.0;
+
+    private final byte[] fineBuckets;
+
+    public NeighborStateEncoder(Hyperparameters params, int maxCapacity) {
+        super(params, maxCapacity);
+        int light = params.getLightEdge(), medium = params.getMediumEdge();
+        this.fineBuckets = StateEncoder.bucketTable(new int[] {0, light / 2, light, (light + medium) / 2, medium},
+                Math.max(maxCapacity, medium + 1));
+        fineBuckets[0] = 1;
+    }
+
+    @Override
+    public int getStateCount() {
+        return STATE_COUNT;
+    }
+
+    @Override
+    public int encodeState(int qNS, int qEW, boolean greenNS, boolean inTransition,
+                           double neighborPheromone, boolean greenWaveIncoming) {
+        int pheromone = neighborPheromone <= 0.0 ? 0 : neighborPheromone > HIGH_PHEROMONE ? 2 : 1;
+        int state = StateEncoder.bucket(fineBuckets, qNS);
+        state = state * QUEUE_BUCKETS + StateEncoder.bucket(fineBuckets, qEW);
+        state = state * PHEROMONE_BUCKETS + pheromone;
+        state = (state << 1) | (greenWaveIncoming ? 1 : 0);
+        state = (state << 1) | (inTransition ? 1 : 0);
+        return (state << 1) | (greenNS ? 1 : 0);
+    }
+
+    @Override
+    public boolean usesNeighborSignals() {
+        return true;
+    }
+
+    @Override
+    public String describe(int state) {
+        boolean greenNS = isGreenNS(state);
+        boolean transition = ((state >> 1) & 1) == 1;
+        boolean wave = ((state >> 2) & 1) == 1;
+        int rest = state >> 3;
+        int pheromone = rest % PHEROMONE_BUCKETS;
+        rest /= PHEROMONE_BUCKETS;
+        int bucketEW = rest % QUEUE_BUCKETS;
+        int bucketNS = rest / QUEUE_BUCKETS;
+        return String.format("NS:%d/5 | EW:%d/5 | %-8s | %-6s | pher:%-4s | %s",
+                bucketNS, bucketEW, greenNS ? "GREEN_NS" : "GREEN_EW", transition ? "yellow" : "-",
+                pheromone == 0 ? "none" : pheromone == 1 ? "some" : "HIGH", wave ? "wave" : "-");
+    }
+}
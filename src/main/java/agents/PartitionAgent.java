@@ -0,0 +1,168 @@
+package agents;
+
+import jade.core.AID;
+import jade.core.Agent;
+import jade.core.behaviours.CyclicBehaviour;
+import jade.core.behaviours.TickerBehaviour;
+import jade.lang.acl.ACLMessage;
+import simulation.CityMap;
+import simulation.NodeStore;
+
+// One per partition: aggregates the metrics of the intersections in this JVM every
+// REPORT_PERIOD_MS and prints them. Partition 0 also collects the other partitions' latest
+// reports (INFORM, ontology "partition-metrics") and prints the platform-wide totals.
+public class PartitionAgent extends Agent {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String ONTOLOGY = "partition-metrics";
+    private static final long REPORT_PERIOD_MS = 10_000;
+
+    private final int part;
+    private final int partitions;
+    private final int boundaryNodes;
+    // Partition 0 only: latest report per partition
+    private final Report[] latest;
+
+    public PartitionAgent(int part, int partitions, int boundaryNodes) {
+        this.part = part;
+        this.partitions = partitions;
+        this.boundaryNodes = boundaryNodes;
+        this.latest = part == 0 ? new Report[partitions] : null;
+    }
+
+    public static String nameOf(int part) {
+        return "Partition_" + part;
+    }
+
+    @Override
+    protected void setup() {
+        addBehaviour(new TickerBehaviour(this, REPORT_PERIOD_MS) {
+            @Override
+            protected void onTick() {
+                if (!CityMap.getInstance().isSimulationRunning()) return;
+                Report r = Report.local(part, boundaryNodes);
+                System.out.println(r);
+                if (part == 0) {
+                    collect(r);
+                } else {
+                    ACLMessage msg = new ACLMessage(ACLMessage.INFORM);
+                    msg.addReceiver(new AID(nameOf(0), AID.ISLOCALNAME));
+                    msg.setOntology(ONTOLOGY);
+                    msg.setContent(r.encode());
+                    send(msg);
+                }
+            }
+        });
+        if (part == 0) {
+            addBehaviour(new CyclicBehaviour() {
+                @Override
+                public void action() {
+                    ACLMessage msg = receive();
+                    if (msg == null) {
+                        block();
+                        return;
+                    }
+                    if (!ONTOLOGY.equals(msg.getOntology())) return;
+                    try {
+                        Report r = Report.decode(msg.getContent());
+                        if (r.part >= 0 && r.part < partitions) latest[r.part] = r;
+                    } catch (RuntimeException e) {
+                        System.out.println("Bad partition report from " + msg.getSender().getLocalName());
+                    }
+                }
+            });
+        }
+    }
+
+    // Totals over the latest report of every partition heard from so far
+    private void collect(Report own) {
+        latest[0] = own;
+        Report total = new Report();
+        int heard = 0;
+        for (Report r : latest) {
+            if (r == null) continue;
+            heard++;
+            total.add(r);
+        }
+        System.out.println("PLATFORM (" + heard + "/" + partitions + " partitions): " + total.summary());
+    }
+
+    static final class Report {
+        int part = -1;
+        int nodes, boundaryNodes;
+        long passed, departures, vehicleWait;
+        double co2;
+        long carsOut, carsIn, carsHeld, carsDropped, messages, bytes;
+
+        static Report local(int part, int boundaryNodes) {
+            NodeStore store = CityMap.getInstance().getStore();
+            Report r = new Report();
+            r.part = part;
+            r.nodes = store.size();
+            r.boundaryNodes = boundaryNodes;
+            r.passed = store.sumCarsPassed();
+            r.departures = store.sumDepartures();
+            r.vehicleWait = store.sumVehicleWait();
+            r.co2 = store.sumCO2();
+            r.carsOut = BoundaryLink.getCarsOut();
+            r.carsIn = BoundaryLink.getCarsIn();
+            r.carsHeld = BoundaryLink.getCarsHeld();
+            r.carsDropped = BoundaryLink.getCarsDropped();
+            r.messages = BoundaryLink.getMessages();
+            r.bytes = BoundaryLink.getBytes();
+            return r;
+        }
+
+        void add(Report r) {
+            nodes += r.nodes;
+            boundaryNodes += r.boundaryNodes;
+            passed += r.passed;
+            departures += r.departures;
+            vehicleWait += r.vehicleWait;
+            co2 += r.co2;
+            carsOut += r.carsOut;
+            carsIn += r.carsIn;
+            carsHeld += r.carsHeld;
+            carsDropped += r.carsDropped;
+            messages += r.messages;
+            bytes += r.bytes;
+        }
+
+        String encode() {
+            return part + ";" + nodes + ";" + boundaryNodes + ";" + passed + ";" + departures + ";" + vehicleWait + ";" + co2
+                    + ";" + carsOut + ";" + carsIn + ";" + carsHeld + ";" + carsDropped + ";" + messages + ";" + bytes;
+        }
+
+        static Report decode(String s) {
+            String[] f = s.split(";");
+            Report r = new Report();
+            r.part = Integer.parseInt(f[0]);
+            r.nodes = Integer.parseInt(f[1]);
+            r.boundaryNodes = Integer.parseInt(f[2]);
+            r.passed = Long.parseLong(f[3]);
+            r.departures = Long.parseLong(f[4]);
+            r.vehicleWait = Long.parseLong(f[5]);
+            r.co2 = Double.parseDouble(f[6]);
+            r.carsOut = Long.parseLong(f[7]);
+            r.carsIn = Long.parseLong(f[8]);
+            r.carsHeld = Long.parseLong(f[9]);
+            r.carsDropped = Long.parseLong(f[10]);
+            r.messages = Long.parseLong(f[11]);
+            r.bytes = Long.parseLong(f[12]);
+            return r;
+        }
+
+        String summary() {
+            double wait = departures > 0 ? (double) vehicleWait / departures : 0.0;
+            return String.format("%d intersections (%d boundary) | Throughput: %d | Per-vehicle wait: %.2fs | CO2: %.1f"
+                            + " | Boundary cars out %d, in %d, held %d, dropped %d | %d boundary messages, %d bytes",
+                    nodes, boundaryNodes, passed, wait, co2, carsOut, carsIn, carsHeld, carsDropped, messages, bytes);
+        }
+
+        @Override
+        public String toString() {
+            return "Partition " + part + ": " + summary();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package agents;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Binary checkpoints of every agent's Q-table, epsilon and hyperparameters, so a SMART run
+// can start from a policy learned earlier instead of exploring from scratch.
+//
+// File layout (big-endian):
+//   int MAGIC, int VERSION, int ACTION_COUNT, int records
+//   per record: short nameLength, name (UTF-8), int stateCount,
+//               double alpha, gamma, epsilon, epsilonDecay, epsilonMin,
+//               byte visited[stateCount], double q[stateCount * ACTION_COUNT]
+//
+// Saving copies the tables on the caller's thread and writes on a background thread, to a
+// temporary file that replaces the checkpoint once complete. With mmap on, both directions
+// go through a mapped file instead of heap buffers, which pays off for large fleets.
+public class PolicyStore {
+
+    private static final int MAGIC = 0x51544231; // "QTB1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int HYPERPARAMETERS = 5;
+
+    private static final PolicyStore instance = new PolicyStore();
+
+    private final Map<String, RLBrain> brains = new ConcurrentHashMap<>();
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "policy-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean saveArmed = new AtomicBoolean(false);
+    private final AtomicBoolean unfrozenReported = new AtomicBoolean(false);
+    private volatile CompletableFuture<Path> lastSave = CompletableFuture.completedFuture(null);
+
+    private ByteBuffer loaded = null;
+    private Map<String, Integer> loadedIndex = new HashMap<>();
+    private Path savePath = null;
+    private boolean mmap = false;
+    private boolean frozen = false;
+
+    // getInstance() serves the GUI / JADE agents; offline tools keep one per grid copy
+    public PolicyStore() {}
+
+    public static PolicyStore getInstance() {
+        return instance;
+    }
+
+    // --load-policy file, --save-policy file, --policy-mmap, --frozen-policy; call before agents are created
+    public void configure(String[] args) throws IOException {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--policy-mmap")) mmap = true;
+            if (args[i].equals("--frozen-policy")) frozen = true;
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--save-policy")) savePath = Paths.get(args[i + 1]);
+            if (args[i].equals("--load-policy")) load(Paths.get(args[i + 1]));
+        }
+    }
+
+    public void setMemoryMapped(boolean on) {
+        this.mmap = on;
+    }
+
+    // Deploy-only: agents compile the loaded policy into a lookup table and stop learning
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public void setSavePath(Path path) {
+        this.savePath = path;
+    }
+
+    public Path getSavePath() {
+        return savePath;
+    }
+
+    // Agents register at setup; a loaded checkpoint is applied to the brain straight away.
+    // Returns whether it was, i.e. whether the brain holds a trained policy that may be frozen
+    public boolean register(String agent, RLBrain brain) {
+        brains.put(agent, brain);
+        return restore(agent, brain);
+    }
+
+    // A brain with nothing restored would freeze its all-zero table into one constant action
+    public void reportUnfrozen(String agent) {
+        if (unfrozenReported.compareAndSet(false, true)) {
+            System.out.println(agent + " has no checkpoint record to freeze; agents without one keep learning");
+        }
+    }
+
+    public void load(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (mmap) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } else {
+                buf = ByteBuffer.allocate((int) ch.size());
+                while (buf.hasRemaining() && ch.read(buf) >= 0) ;
+                buf.flip();
+            }
+        }
+        if (buf.getInt() != MAGIC) throw new IOException("Not a Q-table checkpoint: " + file);
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("Unsupported checkpoint version " + version + ": " + file);
+        int actions = buf.getInt();
+        if (actions != RLBrain.ACTION_COUNT) throw new IOException("Checkpoint has " + actions + " actions, expected " + RLBrain.ACTION_COUNT);
+        int records = buf.getInt();
+
+        // Index names to record offsets; the records themselves are read when agents register
+        Map<String, Integer> index = new HashMap<>(records * 2);
+        for (int r = 0; r < records; r++) {
+            int start = buf.position();
+            byte[] name = new byte[buf.getShort()];
+            buf.get(name);
+            int stateCount = buf.getInt();
+            index.put(new String(name, StandardCharsets.UTF_8), start);
+            buf.position(buf.position() + HYPERPARAMETERS * Double.BYTES + stateCount + stateCount * RLBrain.ACTION_COUNT * Double.BYTES);
+        }
+        synchronized (this) {
+            loaded = buf;
+            loadedIndex = index;
+        }
+        System.out.println("Loaded " + records + " Q-tables from " + file + (mmap ? " (mapped)" : ""));
+    }
+
+    // Returns false if the checkpoint has no compatible record for this agent
+    public synchronized boolean restore(String agent, RLBrain brain) {
+        Integer at = loadedIndex.get(agent);
+        if (at == null) return false;
+        ByteBuffer in = loaded.duplicate();
+        in.position(at);
+        in.position(in.position() + Short.BYTES + in.getShort(at));
+        int stateCount = in.getInt();
+        if (stateCount != brain.getStateCount()) {
+            System.out.println("Checkpoint for " + agent + " has " + stateCount + " states, brain has " + brain.getStateCount() + "; starting cold");
+            return false;
+        }
+        brain.setLearningState(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        brain.getTable().readFrom(in);
+        return true;
+    }
+
+    // Writes every registered brain to path in the background
+    public CompletableFuture<Path> saveAsync(Path path) {
+        Map<String, RLBrain> snapshot = new HashMap<>(brains);
+        int size = HEADER_BYTES;
+        Map<String, byte[]> names = new HashMap<>(snapshot.size() * 2);
+        for (Map.Entry<String, RLBrain> e : snapshot.entrySet()) {
+            byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+            names.put(e.getKey(), name);
+            size += Short.BYTES + name.length + Integer.BYTES + HYPERPARAMETERS * Double.BYTES + e.getValue().getTable().byteSize();
+        }
+
+        // Copy on the caller's thread, so the file holds the tables as they were now
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putInt(VERSION).putInt(RLBrain.ACTION_COUNT).putInt(snapshot.size());
+        for (Map.Entry<String, RLBrain> e : snapshot.entrySet()) {
+            RLBrain b = e.getValue();
+            byte[] name = names.get(e.getKey());
+            out.putShort((short) name.length).put(name);
+            out.putInt(b.getStateCount());
+            out.putDouble(b.getAlpha()).putDouble(b.getGamma()).putDouble(b.getEpsilon())
+                    .putDouble(b.getEpsilonDecay()).putDouble(b.getEpsilonMin());
+            b.getTable().writeTo(out);
+        }
+        out.flip();
+
+        boolean mapped = mmap;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                write(path, out, mapped);
+                return path;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, writer);
+    }
+
+    // Agents report run start / stop; the first to see a run stop triggers one save
+    public void onRunStarted() {
+        saveArmed.set(true);
+    }
+
+    public void onRunStopped() {
+        if (savePath == null || frozen || !saveArmed.compareAndSet(true, false)) return;
+        lastSave = saveAsync(savePath).whenComplete((p, err) -> {
+            if (err != null) err.printStackTrace();
+            else System.out.println("Saved " + brains.size() + " Q-tables to " + p);
+        });
+    }
+
+    // Blocks until the last triggered save is on disk (the writer thread is a daemon)
+    public void flush() {
+        try {
+            lastSave.join();
+        } catch (RuntimeException e) {
+            // Already reported by onRunStopped
+        }
+    }
+
+    private static void write(Path path, ByteBuffer data, boolean mapped) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (mapped) {
+                MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, data.remaining());
+                map.put(data);
+                map.force();
+            } else {
+                while (data.hasRemaining()) ch.write(data);
+                ch.force(false);
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,174 @@
+package agents;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Dense Q-values, ACTION_COUNT per state, state-major.
+// A private table belongs to one brain and is read and written plainly. A shared table is
+// updated by every agent of its class at once: each cell is its own CAS, so agents only
+// collide when they update the very same (state, action) in the same instant.
+public class QTable {
+
+    private static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    private final String name;
+    private final int stateCount;
+    private final boolean shared;
+    private final double[] values;
+    private final boolean[] visited;
+    // Greedy action per state, kept up to date by update() for the convergence counters
+    private final byte[] greedy;
+
+    // Convergence: the greedy policy is stable once no update changes an argmax
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder policyChanges = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private volatile long lastChangeAtUpdate = 0;
+    // Agents attach from their own setup threads (JADE starts them in parallel)
+    private final AtomicInteger agents = new AtomicInteger();
+
+    public QTable(String name, int stateCount, boolean shared) {
+        this.name = name;
+        this.stateCount = stateCount;
+        this.shared = shared;
+        this.values = new double[stateCount * RLBrain.ACTION_COUNT];
+        this.visited = new boolean[stateCount];
+        this.greedy = new byte[stateCount];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public boolean isVisited(int state) {
+        return visited[state];
+    }
+
+    public void visit(int state) {
+        visited[state] = true;
+    }
+
+    void attach() {
+        agents.incrementAndGet();
+    }
+
+    public int getAgents() {
+        return agents.get();
+    }
+
+    public double get(int state, int action) {
+        int k = state * RLBrain.ACTION_COUNT + action;
+        return shared ? (double) DOUBLES.getOpaque(values, k) : values[k];
+    }
+
+    public int bestAction(int state) {
+        visited[state] = true;
+        return greedyAction(state);
+    }
+
+    // Read-only argmax: does not count the state as visited
+    public int greedyAction(int state) {
+        int bestAction = 0;
+        double bestQ = get(state, 0);
+        for (int i = 1; i < RLBrain.ACTION_COUNT; i++) {
+            double q = get(state, i);
+            if (q > bestQ) {
+                bestQ = q;
+                bestAction = i;
+            }
+        }
+        return bestAction;
+    }
+
+    public double maxValue(int state) {
+        visited[state] = true;
+        double max = get(state, 0);
+        for (int i = 1; i < RLBrain.ACTION_COUNT; i++) max = Math.max(max, get(state, i));
+        return max;
+    }
+
+    // Q(s,a) += alpha * (target - Q(s,a))
+    public void update(int state, int action, double target, double alpha) {
+        visited[state] = true;
+        int k = state * RLBrain.ACTION_COUNT + action;
+        double q, updated;
+        if (shared) {
+            q = (double) DOUBLES.getOpaque(values, k);
+            while (!DOUBLES.compareAndSet(values, k, q, updated = q + alpha * (target - q))) {
+                casRetries.increment();
+                q = (double) DOUBLES.getOpaque(values, k);
+            }
+        } else {
+            q = values[k];
+            updated = q + alpha * (target - q);
+            values[k] = updated;
+        }
+        updates.increment();
+
+        // The argmax only moves if the updated action overtakes it or the greedy action itself
+        // drops, so the state is rescanned only in the second case (ties go to the lower action).
+        // On a shared table the cached argmax is racy and the count approximate
+        int before = greedy[state];
+        int after = before;
+        if (action == before) {
+            if (updated < q) after = greedyAction(state);
+        } else {
+            double best = get(state, before);
+            if (updated > best || (updated == best && action < before)) after = action;
+        }
+        if (after != before) {
+            greedy[state] = (byte) after;
+            policyChanges.increment();
+            lastChangeAtUpdate = updates.sum();
+        }
+    }
+
+    // Checkpoint body: visited flags, then the values (see PolicyStore)
+    void writeTo(ByteBuffer out) {
+        for (boolean v : visited) out.put((byte) (v ? 1 : 0));
+        for (int k = 0; k < values.length; k++) {
+            out.putDouble(shared ? (double) DOUBLES.getOpaque(values, k) : values[k]);
+        }
+    }
+
+    void readFrom(ByteBuffer in) {
+        for (int s = 0; s < stateCount; s++) visited[s] = in.get() != 0;
+        for (int k = 0; k < values.length; k++) {
+            if (shared) DOUBLES.setOpaque(values, k, in.getDouble());
+            else values[k] = in.getDouble();
+        }
+        for (int st = 0; st < stateCount; st++) greedy[st] = (byte) greedyAction(st);
+    }
+
+    int byteSize() {
+        return stateCount + values.length * Double.BYTES;
+    }
+
+    public long getUpdates() {
+        return updates.sum();
+    }
+
+    public long getPolicyChanges() {
+        return policyChanges.sum();
+    }
+
+    // Update count at the last argmax change; with no change since, the policy converged there
+    public long getLastChangeAtUpdate() {
+        return lastChangeAtUpdate;
+    }
+
+    public long getCasRetries() {
+        return casRetries.sum();
+    }
+}
@@ -0,0 +1,175 @@
+package agents;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hands out Q-tables to brains. Without sharing every agent learns alone; otherwise all
+// agents of a class (whole grid, same row, same number of roads) learn into one table.
+// Shared tables are updated lock-free as agents decide, so with --threads > 1 the order of
+// updates, and with it the learned policy, varies from run to run; only unshared runs are
+// reproducible across thread counts.
+public class QTableRegistry {
+
+    public enum Sharing {
+        NONE,
+        ALL,
+        ROW,
+        DEGREE
+    }
+
+    private static final QTableRegistry instance = new QTableRegistry();
+
+    private volatile Sharing sharing = Sharing.NONE;
+    private final Map<String, QTable> tables = new ConcurrentHashMap<>();
+
+    // Experience replay, off while the capacity is 0
+    private int replayCapacity = 0;
+    private int replayBatch = 32;
+    private int replayEvery = 10;
+    private ReplayBuffer.Sampling replaySampling = ReplayBuffer.Sampling.UNIFORM;
+
+    private volatile Hyperparameters hyperparameters = Hyperparameters.DEFAULTS;
+    private volatile StateEncoder.Kind encoder = StateEncoder.Kind.MICRO;
+    private volatile Brain.Kind brain = Brain.Kind.TABULAR;
+
+    // getInstance() serves the GUI / JADE agents; offline tools keep one per grid copy
+    public QTableRegistry() {}
+
+    public static QTableRegistry getInstance() {
+        return instance;
+    }
+
+    // --share-q NONE|ALL|ROW|DEGREE, --replay capacity, --replay-batch n, --replay-every n,
+    // --replay-sampling UNIFORM|BACKWARD, --learning-config file, --hyper key=value,...,
+    // --encoder MICRO|NEIGHBOR, --brain TABULAR|LINEAR; call before agents are created
+    public void configure(String[] args) throws IOException {
+        hyperparameters = Hyperparameters.fromArgs(args);
+        for (int i = 0; i < args.length - 1; i++) {
+            switch (args[i]) {
+                case "--share-q" -> sharing = Sharing.valueOf(args[i + 1]);
+                case "--replay" -> replayCapacity = Integer.parseInt(args[i + 1]);
+                case "--replay-batch" -> replayBatch = Integer.parseInt(args[i + 1]);
+                case "--replay-every" -> replayEvery = Integer.parseInt(args[i + 1]);
+                case "--replay-sampling" -> replaySampling = ReplayBuffer.Sampling.valueOf(args[i + 1]);
+                case "--encoder" -> encoder = StateEncoder.Kind.valueOf(args[i + 1]);
+                case "--brain" -> brain = Brain.Kind.valueOf(args[i + 1]);
+                default -> { }
+            }
+        }
+        // Only Q-tables compile to a frozen policy (PolicyStore reads the flag itself)
+        if (brain == Brain.Kind.LINEAR && Arrays.asList(args).contains("--frozen-policy")) {
+            throw new IllegalArgumentException("--frozen-policy needs --brain TABULAR");
+        }
+    }
+
+    // Set before agents are created
+    public void setSharing(Sharing sharing) {
+        this.sharing = sharing;
+    }
+
+    public Sharing getSharing() {
+        return sharing;
+    }
+
+    // Brains and encoders created from here on use these
+    public void setHyperparameters(Hyperparameters hyperparameters) {
+        this.hyperparameters = hyperparameters;
+    }
+
+    public Hyperparameters getHyperparameters() {
+        return hyperparameters;
+    }
+
+    public void setEncoder(StateEncoder.Kind encoder) {
+        this.encoder = encoder;
+    }
+
+    public StateEncoder.Kind getEncoder() {
+        return encoder;
+    }
+
+    public void setBrain(Brain.Kind brain) {
+        this.brain = brain;
+    }
+
+    public Brain.Kind getBrain() {
+        return brain;
+    }
+
+    // The encoder fixes the table size, so brains sharing a table must use the same kind.
+    // Linear brains always read raw states; raw states never go into a table.
+    public StateEncoder newEncoder(int maxCapacity) {
+        if (brain == Brain.Kind.LINEAR) return new RawStateEncoder(hyperparameters, maxCapacity);
+        if (encoder == StateEncoder.Kind.RAW) throw new IllegalArgumentException("RAW states need --brain LINEAR");
+        return StateEncoder.create(encoder, hyperparameters, maxCapacity);
+    }
+
+    // row / degree describe the agent; the key is its own name when nothing is shared
+    public QTable tableFor(String agent, int row, int degree, int stateCount) {
+        String key = switch (sharing) {
+            case NONE -> agent;
+            case ALL -> "all";
+            case ROW -> "row " + row;
+            case DEGREE -> "degree " + degree;
+        };
+        QTable table = tables.computeIfAbsent(key, k -> new QTable(k, stateCount, sharing != Sharing.NONE));
+        table.attach();
+        return table;
+    }
+
+    public void setReplay(int capacity, int batchSize, int every, ReplayBuffer.Sampling sampling) {
+        this.replayCapacity = capacity;
+        this.replayBatch = batchSize;
+        this.replayEvery = every;
+        this.replaySampling = sampling;
+    }
+
+    // A fresh buffer per brain (replay stays local even when the table is shared); null when off
+    public ReplayBuffer replayFor(long seed) {
+        if (replayCapacity <= 0) return null;
+        return new ReplayBuffer(replayCapacity, replayBatch, replayEvery, replaySampling, seed);
+    }
+
+    public void clear() {
+        tables.clear();
+    }
+
+    // Convergence and contention per table (independent learners summed into one line)
+    public void printReport() {
+        List<QTable> all = new ArrayList<>(tables.values());
+        all.sort((a, b) -> a.getName().compareTo(b.getName()));
+        if (brain == Brain.Kind.LINEAR) {
+            System.out.println("Linear tile-coded brains, one per agent (no Q-tables to share)");
+            return;
+        }
+        System.out.println("Q-table sharing: " + sharing + " (" + all.size() + " tables, " + encoder + " encoder)");
+        if (replayCapacity > 0) {
+            System.out.printf("  replay %s | capacity %d | batch %d every %d transitions%n",
+                    replaySampling, replayCapacity, replayBatch, replayEvery);
+        }
+        if (sharing == Sharing.NONE) {
+            long updates = 0, changes = 0, lastMax = 0;
+            double perAgent = 0;
+            for (QTable t : all) {
+                updates += t.getUpdates();
+                changes += t.getPolicyChanges();
+                lastMax = Math.max(lastMax, t.getLastChangeAtUpdate());
+                perAgent += t.getLastChangeAtUpdate();
+            }
+            System.out.printf("  independent | updates %d | policy changes %d | converged after %.0f updates per agent (mean), %d (slowest)%n",
+                    updates, changes, all.isEmpty() ? 0.0 : perAgent / all.size(), lastMax);
+            return;
+        }
+        for (QTable t : all) {
+            long updates = t.getUpdates();
+            System.out.printf("  %-10s | agents %d | updates %d | policy changes %d | converged after %d updates (%.0f per agent) | CAS retries %d (%.3f%%)%n",
+                    t.getName(), t.getAgents(), updates, t.getPolicyChanges(), t.getLastChangeAtUpdate(),
+                    t.getAgents() == 0 ? 0.0 : (double) t.getLastChangeAtUpdate() / t.getAgents(),
+                    t.getCasRetries(), updates == 0 ? 0.0 : 100.0 * t.getCasRetries() / updates);
+        }
+    }
+}
@@ -1,18 +1,24 @@
 package agents;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class RLBrain {
-    // Hyperparameters
-    private double alpha = 0.2;   // Learning Rate
-    private double gamma = 0.8;   // Discount Factor
-    private double epsilon = 0.15; // Exploration Rate
+import simulation.RandomStreams;
 
-    // Q-Table storage
-    private final Map<Integer, double[]> qTable = new HashMap<>();
-    private final Random rnd = new Random(42);
+public class RLBrain implements Brain {
+    // Hyperparameters (defaults in Hyperparameters.DEFAULTS)
+    private double alpha;   // Learning Rate
+    private double gamma;   // Discount Factor
+    private double epsilon; // Exploration Rate
+    private double epsilonDecay;
+    private double epsilonMin;
+
+    // Q-Table storage, private or shared with the agent's class (see QTableRegistry)
+    private final QTable qTable;
+    private final SplittableRandom rnd;
+
+    // Optional experience replay on top of the online update
+    private ReplayBuffer replay = null;
+    private long replayedUpdates = 0;
 
     // Actions
     public static final int ACTION_SWITCH = 0;
@@ -21,92 +27,120 @@ public class RLBrain {
     public static final int ACTION_COUNT = 3;
 
     public RLBrain() {
+        this(MicroStateEncoder.STATE_COUNT, RandomStreams.DEFAULT_SEED);
+    }
+
+    // stateCount from the encoder; seed is the exploration stream,
+    // normally RandomStreams.seed(master, agent, EXPLORATION)
+    public RLBrain(int stateCount, long seed) {
+        this(new QTable("private", stateCount, false), seed);
+    }
+
+    public RLBrain(QTable table, long seed) {
+        this(table, seed, Hyperparameters.DEFAULTS);
+    }
+
+    // Exploration (epsilon and its stream) stays per brain even when the table is shared
+    public RLBrain(QTable table, long seed, Hyperparameters params) {
+        this.qTable = table;
+        this.rnd = new SplittableRandom(seed);
+        setLearningState(params.getAlpha(), params.getGamma(), params.getEpsilon(),
+                params.getEpsilonDecay(), params.getEpsilonMin());
+    }
+
+    public int getStateCount() {
+        return qTable.getStateCount();
+    }
+
+    public QTable getTable() {
+        return qTable;
+    }
+
+    public void setReplay(ReplayBuffer replay) {
+        this.replay = replay;
+    }
 
+    public ReplayBuffer getReplay() {
+        return replay;
     }
 
-    private double[] ensureState(int state) {
-        return qTable.computeIfAbsent(state, s -> new double[ACTION_COUNT]);
+    public long getReplayedUpdates() {
+        return replayedUpdates;
     }
 
+    public double getAlpha() { return alpha; }
+    public double getGamma() { return gamma; }
+    @Override public double getEpsilon() { return epsilon; }
+    public double getEpsilonDecay() { return epsilonDecay; }
+    public double getEpsilonMin() { return epsilonMin; }
+
+    // Restores the learning state saved in a checkpoint (the Q-values are loaded into the table)
+    public void setLearningState(double alpha, double gamma, double epsilon, double epsilonDecay, double epsilonMin) {
+        this.alpha = alpha;
+        this.gamma = gamma;
+        this.epsilon = epsilon;
+        this.epsilonDecay = epsilonDecay;
+        this.epsilonMin = epsilonMin;
+    }
+
+    @Override
     public int chooseAction(int state) {
         // Epsilon decay
-        if (epsilon > 0.01) epsilon *= 0.999;
-
-        double[] qvals = ensureState(state);
+        if (epsilon > epsilonMin) epsilon *= epsilonDecay;
 
         // Explore
         if (rnd.nextDouble() < epsilon) {
+            qTable.visit(state);
             return rnd.nextInt(ACTION_COUNT);
         }
 
         // Find Max Q
-        int bestAction = 0;
-        double bestQ = qvals[0];
-        for (int i = 1; i < ACTION_COUNT; i++) {
-            if (qvals[i] > bestQ) {
-                bestQ = qvals[i];
-                bestAction = i;
-            }
-        }
-        return bestAction;
+        return qTable.bestAction(state);
     }
 
+    @Override
     public void update(int prevState, int action, double reward, int newState) {
-        double[] oldQ = ensureState(prevState);
-        double[] nextQ = ensureState(newState);
-
         // Find max Q for next state
-        double maxNext = nextQ[0];
-        for(int i = 1; i < ACTION_COUNT; i++) {
-            maxNext = Math.max(maxNext, nextQ[i]);
-        }
+        double maxNext = qTable.maxValue(newState);
 
         // Bellman Equation
-        oldQ[action] = oldQ[action] + alpha * (reward + gamma * maxNext - oldQ[action]);
+        qTable.update(prevState, action, reward + gamma * maxNext, alpha);
+
+        if (replay != null && replay.add(prevState, action, reward, newState)) replayBatch();
     }
 
-    public void printQTable() {
+    // Re-applies the update to a mini-batch of stored transitions, against the current Q-values
+    private void replayBatch() {
+        for (int k = 0; k < replay.getBatchSize(); k++) {
+            int slot = replay.sample();
+            double target = replay.rewardAt(slot) + gamma * qTable.maxValue(replay.nextStateAt(slot));
+            qTable.update(replay.stateAt(slot), replay.actionAt(slot), target, alpha);
+        }
+        replayedUpdates += replay.getBatchSize();
+    }
+
+    @Override
+    public void printQTable(StateEncoder encoder) {
         System.out.println("\nFINAL Q-TABLE REPORT");
-        if (qTable.isEmpty()) {
+        boolean empty = true;
+        for (int state = 0; state < qTable.getStateCount(); state++) empty &= !qTable.isVisited(state);
+        if (empty) {
             System.out.println("Q-Table is empty");
             return;
         }
 
-        java.util.List<Integer> sortedStates = new java.util.ArrayList<>(qTable.keySet());
-        java.util.Collections.sort(sortedStates);
-
-        for (Integer state : sortedStates) {
-            double[] actions = qTable.get(state);
-
-            // Decode state
-            int bucketNS = (state >> 3) & 0b11;
-            int bucketEW = (state >> 1) & 0b11;
-            int light = state & 1;
-
-            // Interpret buckets
-            String nsStr = bucketToText(bucketNS);
-            String ewStr = bucketToText(bucketEW);
-            String lightStr = (light == 1) ? "GREEN_NS" : "GREEN_EW";
+        for (int state = 0; state < qTable.getStateCount(); state++) {
+            if (!qTable.isVisited(state)) continue;
 
             // Find best action
-            int bestAction = 0;
-            if (actions[1] > actions[bestAction]) bestAction = 1;
-            if (actions[2] > actions[bestAction]) bestAction = 2;
-            String bestActStr = actionToText(bestAction);
+            String bestActStr = actionToText(qTable.bestAction(state));
 
-            System.out.printf("State [NS:%-6s | EW:%-6s | %-8s] -> Switch: %6.1f | HoldShort: %6.1f | HoldLong: %6.1f  >>> BEST: %s%n",
-                    nsStr, ewStr, lightStr, actions[0], actions[1], actions[2], bestActStr);
+            System.out.printf("State [%s] -> Switch: %6.1f | HoldShort: %6.1f | HoldLong: %6.1f  >>> BEST: %s%n",
+                    encoder.describe(state), qTable.get(state, 0), qTable.get(state, 1), qTable.get(state, 2), bestActStr);
         }
         System.out.println("----------------------------\n");
     }
 
-    private String bucketToText(int b) {
-        if (b == 0) return "Empty";
-        if (b == 1) return "Light";
-        if (b == 2) return "Med";
-        return "HEAVY";
-    }
-
     private String actionToText(int a) {
         if (a == 0) return "SWITCH";
         if (a == 1) return "HOLD_5s";
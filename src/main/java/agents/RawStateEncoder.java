@@ -0,0 +1,62 @@
+package agents;
+
+// Packs the raw observation into the state int instead of bucketing it, for brains that
+// generalise over it themselves (LinearBrain). Far too many states for a table.
+// Bits, low to high: light, transition, green wave, pheromone x 2 (5 bits), EW queue + 1
+// (8 bits), NS queue + 1 (8 bits). Queues are clamped to getMaxQueue(), -1 is a broken sensor.
+public class RawStateEncoder extends MicroStateEncoder {
+
+    public static final int STATE_COUNT = 1 << 24;
+
+    private static final int PHEROMONE_SHIFT = 3;
+    private static final int EW_SHIFT = 8;
+    private static final int NS_SHIFT = 16;
+
+    private final int maxQueue;
+
+    public RawStateEncoder(Hyperparameters params, int maxCapacity) {
+        super(params, maxCapacity);
+        this.maxQueue = Math.min(254, Math.max(maxCapacity, params.getMediumEdge() + 1));
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    @Override
+    public int getStateCount() {
+        return STATE_COUNT;
+    }
+
+    @Override
+    public int encodeState(int qNS, int qEW, boolean greenNS, boolean inTransition,
+                           double neighborPheromone, boolean greenWaveIncoming) {
+        int pheromone = (int) Math.min(31, Math.max(0, neighborPheromone * 2));
+        return (Math.min(qNS, maxQueue) + 1) << NS_SHIFT
+                | (Math.min(qEW, maxQueue) + 1) << EW_SHIFT
+                | pheromone << PHEROMONE_SHIFT
+                | (greenWaveIncoming ? 4 : 0)
+                | (inTransition ? 2 : 0)
+                | (greenNS ? 1 : 0);
+    }
+
+    // Decoders; queues come back as -1 .. maxQueue
+    public static int queueNS(int state) { return (state >>> NS_SHIFT) - 1; }
+    public static int queueEW(int state) { return ((state >>> EW_SHIFT) & 0xFF) - 1; }
+    public static int pheromoneHalves(int state) { return (state >>> PHEROMONE_SHIFT) & 0x1F; }
+    // light | transition << 1 | green wave << 2
+    public static int flags(int state) { return state & 0b111; }
+
+    @Override
+    public boolean usesNeighborSignals() {
+        return true;
+    }
+
+    @Override
+    public String describe(int state) {
+        int f = flags(state);
+        return String.format("NS:%3d | EW:%3d | %-8s | %-6s | pher:%4.1f | %s",
+                queueNS(state), queueEW(state), (f & 1) == 1 ? "GREEN_NS" : "GREEN_EW",
+                (f & 2) != 0 ? "yellow" : "-", pheromoneHalves(state) / 2.0, (f & 4) != 0 ? "wave" : "-");
+    }
+}
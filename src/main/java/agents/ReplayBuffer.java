@@ -0,0 +1,88 @@
+package agents;
+
+import java.util.SplittableRandom;
+
+// Ring of past transitions (state, action, reward, next state) in parallel primitive arrays,
+// replayed through the brain's Bellman update in mini-batches. All storage is allocated up
+// front; adding and sampling never allocate, so it can stay on for every agent of a large grid.
+public class ReplayBuffer {
+
+    public enum Sampling {
+        UNIFORM,  // any stored transition, with replacement
+        BACKWARD  // the newest transitions, newest first, so rewards flow back along the trajectory
+    }
+
+    private final int[] states;
+    private final byte[] actions;
+    private final float[] rewards;
+    private final int[] nextStates;
+
+    private final int batchSize;
+    private final int every;
+    private final Sampling sampling;
+    private final SplittableRandom rnd;
+
+    private int head = 0;  // next slot to write
+    private int size = 0;
+    private int cursor = 0;
+    private int sinceBatch = 0;
+
+    // every: transitions added between two mini-batches
+    public ReplayBuffer(int capacity, int batchSize, int every, Sampling sampling, long seed) {
+        if (capacity < 1 || batchSize < 1 || every < 1) {
+            throw new IllegalArgumentException("Replay capacity, batch and interval must be positive");
+        }
+        this.states = new int[capacity];
+        this.actions = new byte[capacity];
+        this.rewards = new float[capacity];
+        this.nextStates = new int[capacity];
+        this.batchSize = batchSize;
+        this.every = every;
+        this.sampling = sampling;
+        this.rnd = new SplittableRandom(seed);
+    }
+
+    // Overwrites the oldest transition once full; true when a mini-batch is due
+    public boolean add(int state, int action, double reward, int nextState) {
+        states[head] = state;
+        actions[head] = (byte) action;
+        rewards[head] = (float) reward;
+        nextStates[head] = nextState;
+        head = head + 1 == states.length ? 0 : head + 1;
+        if (size < states.length) size++;
+
+        if (++sinceBatch < every || size < batchSize) return false;
+        sinceBatch = 0;
+        cursor = 0;
+        return true;
+    }
+
+    // Slot of the next transition in the current mini-batch
+    public int sample() {
+        if (sampling == Sampling.UNIFORM) return rnd.nextInt(size);
+        int back = cursor++ % size;
+        int slot = head - 1 - back;
+        return slot < 0 ? slot + states.length : slot;
+    }
+
+    public int stateAt(int slot) { return states[slot]; }
+    public int actionAt(int slot) { return actions[slot]; }
+    public float rewardAt(int slot) { return rewards[slot]; }
+    public int nextStateAt(int slot) { return nextStates[slot]; }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return states.length;
+    }
+
+    public Sampling getSampling() {
+        return sampling;
+    }
+}
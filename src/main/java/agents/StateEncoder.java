@@ -0,0 +1,55 @@
+package agents;
+
+// Turns what an agent observes into a dense state index for its Q-table.
+// Every index encodeState returns is below getStateCount(), so tables are plain arrays.
+// Implementations must not allocate per call: encodeState runs on every SMART decision.
+public interface StateEncoder {
+
+    enum Kind {
+        MICRO,   // local queues and light, 32 states
+        NEIGHBOR, // finer queues, transition, neighbour pheromone and green-wave signal
+        RAW       // unbucketed observation, for LINEAR brains only
+    }
+
+    static StateEncoder create(Kind kind, Hyperparameters params, int maxCapacity) {
+        return switch (kind) {
+            case MICRO -> new MicroStateEncoder(params, maxCapacity);
+            case NEIGHBOR -> new NeighborStateEncoder(params, maxCapacity);
+            case RAW -> new RawStateEncoder(params, maxCapacity);
+        };
+    }
+
+    int getStateCount();
+
+    int encodeState(int qNS, int qEW, boolean greenNS, boolean inTransition,
+                    double neighborPheromone, boolean greenWaveIncoming);
+
+    double calculateReward(int qNS, int qEW, boolean didSwitch);
+
+    // Light of an encoded state (the safety masking depends on it)
+    boolean isGreenNS(int state);
+
+    // For the Q-table report
+    String describe(int state);
+
+    // True if upstream agents should announce platoons to SMART agents using this encoder
+    default boolean usesNeighborSignals() {
+        return false;
+    }
+
+    // Bucket per queue length, for -1 (broken sensor) up to maxQueue; longer queues use the last entry.
+    // A queue q falls in the first bucket whose upper edge is >= q.
+    static byte[] bucketTable(int[] upperEdges, int maxQueue) {
+        byte[] table = new byte[maxQueue + 2];
+        for (int q = -1; q <= maxQueue; q++) {
+            int b = 0;
+            while (b < upperEdges.length && q > upperEdges[b]) b++;
+            table[q + 1] = (byte) b;
+        }
+        return table;
+    }
+
+    static int bucket(byte[] table, int q) {
+        return table[Math.min(q + 1, table.length - 1)];
+    }
+}
@@ -0,0 +1,166 @@
+package org.traffic;
+
+import agents.GreenWaveNotice;
+import agents.IntersectionController;
+import agents.MessageStats;
+import agents.PolicyStore;
+import agents.QTableRegistry;
+import simulation.CityMap;
+import simulation.GreenWavePlanner;
+import simulation.GridLayout;
+import simulation.NodeStore;
+import simulation.RandomStreams;
+import simulation.SimulationEngine;
+import simulation.StartupReport;
+import simulation.TrafficNode;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Runs the grid without JADE or JavaFX, as fast as the CPU allows.
+// Usage: HeadlessSimulation [--ticks 3600] [--mode SMART] [--highway 50] [--side 15] [--no-penalty] [--threads 4]
+//                           [--rows 3] [--cols 3] [--grid-config grid.properties] [--event-driven]
+//                           [--seed 42] [--pheromone-diffusion 0.2] [--green-wave-plan 60] [--green-wave-cycle 40] [--share-q NONE|ALL|ROW|DEGREE]
+//                           [--replay 10000] [--replay-batch 32] [--replay-every 10] [--replay-sampling UNIFORM|BACKWARD]
+//                           [--learning-config learning.properties] [--hyper alpha=0.3,gamma=0.9] [--encoder MICRO|NEIGHBOR] [--brain TABULAR|LINEAR]
+//                           [--load-policy q.bin] [--save-policy q.bin] [--policy-mmap] [--frozen-policy] [--print-q-tables]
+// Results do not depend on --threads, except with --share-q other than NONE (see QTableRegistry).
+public class HeadlessSimulation {
+
+    public static SimulationEngine buildGrid(GridLayout layout) {
+        return buildGrid(CityMap.getInstance(), layout, QTableRegistry.getInstance(), PolicyStore.getInstance());
+    }
+
+    // Builds the grid into map; tables and policies hold the agents' learning state
+    public static SimulationEngine buildGrid(CityMap map, GridLayout layout, QTableRegistry tables, PolicyStore policies) {
+        map.reserve(layout.size());
+        SimulationEngine engine = new SimulationEngine(map.getStore());
+        Map<String, IntersectionController> byName = new HashMap<>();
+        // Notices are sent from the sharded settle phase, so they go through the receiver's slot
+        // in the store instead of into its controller
+        NodeStore store = map.getStore();
+        IntersectionController.Signals signals = (target, cars, eta) -> {
+            IntersectionController c = byName.get(target);
+            if (c == null) return;
+            MessageStats.recordSent(GreenWaveNotice.BYTES);
+            MessageStats.recordReceived();
+            store.postGreenWave(c.nodeId(), eta);
+        };
+
+        for (int row = 0; row < layout.getRows(); row++) {
+            for (int col = 0; col < layout.getCols(); col++) {
+                String name = GridLayout.nodeName(row, col);
+                TrafficNode node = map.createIntersection(name, layout.screenX(col), layout.screenY(row));
+
+                IntersectionController c = new IntersectionController(name, node,
+                        layout.southOf(row, col), layout.eastOf(row, col), signals, tables, policies);
+                byName.put(name, c);
+                engine.register(c);
+            }
+        }
+        for (int row = 0; row < layout.getRows(); row++) {
+            for (int col = 0; col < layout.getCols(); col++) {
+                map.connect(GridLayout.nodeName(row, col), layout.southOf(row, col), layout.eastOf(row, col));
+            }
+        }
+        return engine;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long ticks = 3600;
+        CityMap.Mode mode = CityMap.Mode.BASELINE_FIXED;
+        int highway = 50, side = 15;
+        boolean penalty = true;
+        int threads = 1;
+        boolean eventDriven = false;
+        long seed = RandomStreams.DEFAULT_SEED;
+        double diffusion = 0.0;
+        int planPeriod = 0;
+        int planCycle = GreenWavePlanner.DEFAULT_CYCLE;
+        boolean printTables = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ticks" -> ticks = Long.parseLong(args[++i]);
+                case "--mode" -> mode = CityMap.Mode.valueOf(args[++i]);
+                case "--highway" -> highway = Integer.parseInt(args[++i]);
+                case "--side" -> side = Integer.parseInt(args[++i]);
+                case "--no-penalty" -> penalty = false;
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--event-driven" -> eventDriven = true;
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--pheromone-diffusion" -> diffusion = Double.parseDouble(args[++i]);
+                case "--green-wave-plan" -> planPeriod = Integer.parseInt(args[++i]);
+                case "--green-wave-cycle" -> planCycle = Integer.parseInt(args[++i]);
+                case "--print-q-tables" -> printTables = true;
+                case "--share-q", "--replay", "--replay-batch", "--replay-every", "--replay-sampling",
+                     "--learning-config", "--hyper", "--encoder", "--brain" -> i++; // read by QTableRegistry
+                case "--rows", "--cols", "--grid-config" -> i++; // read by GridLayout
+                case "--load-policy", "--save-policy" -> i++; // read by PolicyStore
+                case "--policy-mmap", "--frozen-policy" -> { }
+                default -> System.out.println("Unknown argument: " + args[i]);
+            }
+        }
+
+        CityMap map = CityMap.getInstance();
+        map.setMode(mode);
+        map.setTrafficParams(highway, side);
+        map.setPenaltyEnabled(penalty);
+        map.setSeed(seed);
+        map.getStore().getPheromoneField().setDiffusion(diffusion);
+
+        GridLayout layout = GridLayout.fromArgs(args);
+        PolicyStore.getInstance().configure(args);
+        QTableRegistry.getInstance().configure(args);
+        StartupReport report = new StartupReport();
+        SimulationEngine engine = buildGrid(layout);
+        engine.setParallelism(threads);
+        engine.setEventDriven(eventDriven);
+        GreenWavePlanner planner = null;
+        if (planPeriod > 0) {
+            planner = new GreenWavePlanner(map.getStore(), planCycle);
+            engine.setPlanner(planner, planPeriod, (node, offset, greenNS, cycle) -> {
+                ((IntersectionController) engine.getController(node)).onOffsetSchedule(offset, greenNS, cycle);
+                engine.wake(node);
+            });
+        }
+        report.mark("agent creation");
+        map.setSimulationRunning(true);
+        engine.step();
+        report.mark("first tick");
+        report.print();
+
+        SimulationEngine.RunStats stats = engine.run(ticks - 1);
+        // Ticks that stepped nodes; the finish tick only ends the run
+        long steppedTicks = engine.getTick();
+        engine.finish(printTables);
+        engine.shutdown();
+        PolicyStore.getInstance().flush();
+
+        printSummary(mode);
+        if (mode == CityMap.Mode.SMART) QTableRegistry.getInstance().printReport();
+        MessageStats.printReport(engine.getSimulatedSeconds());
+        if (planner != null && planner.getPasses() > 0) {
+            System.out.printf("Green-wave planner: %d passes, %d node replans (%.1f%% of full passes)%n", planner.getPasses(),
+                    planner.getRecomputed(), 100.0 * planner.getRecomputed() / (planner.getPasses() * (double) layout.size()));
+        }
+        System.out.println(stats);
+        long dense = layout.size() * steppedTicks;
+        System.out.printf("Node steps: %d (%.1f%% of a dense sweep)%n", engine.getNodeSteps(),
+                dense == 0 ? 0.0 : 100.0 * engine.getNodeSteps() / dense);
+    }
+
+    static void printSummary(CityMap.Mode mode) {
+        NodeStore store = CityMap.getInstance().getStore();
+        long passed = store.sumCarsPassed();
+        long wait = store.sumWaitTime();
+        double co2 = store.sumCO2();
+        double avgWait = passed > 0 ? (double) wait / passed : 0.0;
+        long departed = store.sumDepartures();
+        double vehicleWait = departed > 0 ? (double) store.sumVehicleWait() / departed : 0.0;
+        System.out.printf("MODE: %s | Throughput: %d | Avg Wait: %.2fs | CO2: %.1f%n", mode, passed, avgWait, co2);
+        System.out.printf("Per-vehicle wait: mean %.2fs | p50 %ds | p95 %ds | p99 %ds over %d departures%n",
+                vehicleWait, store.waitPercentile(0.50), store.waitPercentile(0.95), store.waitPercentile(0.99), departed);
+    }
+}
@@ -0,0 +1,81 @@
+package org.traffic;
+
+import agents.GridDeployer;
+import agents.PolicyStore;
+import agents.QTableRegistry;
+import simulation.CityMap;
+import simulation.GridLayout;
+import simulation.GridPartition;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// JADE without the JavaFX map. Grid from --grid-config / --rows / --cols,
+// --mode picks the strategy, --seed sets the master random seed, --share-q how
+// agents share Q-tables, --replay turns on experience replay and --start begins the simulation immediately.
+// --load-policy / --save-policy warm-start SMART agents from a Q-table checkpoint,
+// --frozen-policy deploys it as a fixed lookup table. --learning-config / --hyper set the
+// learning rates, state buckets and reward weights.
+//
+// --partitions K splits the grid into K row bands, one container and JVM each. Without
+// --partition this process runs partition 0 (the main container) and launches the other K-1
+// on this host; on several hosts start each with --partition p --main-host <host of partition 0>.
+// --main-port sets the main container's port (default 1099).
+// --green-wave-plan N replans green-wave offsets every N seconds (COORD_GREEN_WAVE), per partition.
+public class MasConsole {
+
+    public static void main(String[] args) throws Exception {
+        GridLayout layout = GridLayout.fromArgs(args);
+        GridPartition partition = GridPartition.fromArgs(layout, args);
+        PolicyStore.getInstance().configure(args);
+        QTableRegistry.getInstance().configure(args);
+        boolean jadeGui = true;
+        int part = -1;
+        String mainHost = "localhost";
+        int mainPort = GridDeployer.DEFAULT_PORT;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--no-gui")) jadeGui = false;
+            if (args[i].equals("--mode")) CityMap.getInstance().setMode(CityMap.Mode.valueOf(args[i + 1]));
+            if (args[i].equals("--seed")) CityMap.getInstance().setSeed(Long.parseLong(args[i + 1]));
+            if (args[i].equals("--start")) CityMap.getInstance().setSimulationRunning(true);
+            if (args[i].equals("--partition")) part = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("--main-host")) mainHost = args[i + 1];
+            if (args[i].equals("--main-port")) mainPort = Integer.parseInt(args[i + 1]);
+            if (args[i].equals("--green-wave-plan")) GridDeployer.setGreenWavePlanPeriod(Integer.parseInt(args[i + 1]));
+        }
+
+        if (partition.getPartitions() == 1) {
+            System.out.println("Deploying " + layout.getRows() + "x" + layout.getCols() + " grid");
+            GridDeployer.deploy(layout, jadeGui);
+            return;
+        }
+
+        boolean launcher = part < 0;
+        if (launcher) part = 0;
+        // Each partition checkpoints only its own agents
+        PolicyStore policies = PolicyStore.getInstance();
+        if (policies.getSavePath() != null) {
+            policies.setSavePath(policies.getSavePath().resolveSibling(policies.getSavePath().getFileName() + ".part" + part));
+        }
+        System.out.println("Deploying partition " + part + " of " + partition.getPartitions() + " of a "
+                + layout.getRows() + "x" + layout.getCols() + " grid");
+        GridDeployer.deploy(partition, part, mainHost, mainPort, jadeGui && part == 0);
+        if (launcher) launchPartitions(partition.getPartitions(), args);
+    }
+
+    // Starts partitions 1..K-1 as child JVMs of this one, once the main container is up
+    private static void launchPartitions(int partitions, String[] args) throws Exception {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> children = new ArrayList<>();
+        for (int p = 1; p < partitions; p++) {
+            List<String> cmd = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                    MasConsole.class.getName()));
+            cmd.addAll(Arrays.asList(args));
+            cmd.addAll(Arrays.asList("--partition", String.valueOf(p), "--no-gui"));
+            children.add(new ProcessBuilder(cmd).inheritIO().start());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> children.forEach(Process::destroy)));
+    }
+}
@@ -0,0 +1,254 @@
+package org.traffic;
+
+import agents.Hyperparameters;
+import agents.IntersectionController;
+import agents.PolicyStore;
+import agents.QTableRegistry;
+import simulation.CityMap;
+import simulation.GridLayout;
+import simulation.NodeStore;
+import simulation.RandomStreams;
+import simulation.SimulationEngine;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Hyperparameter search for SMART, headless and on all cores.
+// Every candidate runs once per fixed seed; every other mode runs once per seed as the baseline
+// to beat (they do not depend on the learning parameters). One CSV line per run, written as
+// soon as the run ends, so a long sweep can be watched or cut short.
+// Usage: SweepRunner [--param alpha=0.1,0.2,0.4] [--param gamma=0.7:0.95] ...
+//                    [--search grid|random] [--samples 50] [--seeds 42,43,44] [--ticks 3600]
+//                    [--workers N] [--out sweep.csv] [--highway 50] [--side 15] [--no-penalty]
+//                    [--rows 3] [--cols 3] [--grid-config grid.properties]
+// A --param takes a list of values or, for random search, a lo:hi range (grid search uses the two ends).
+// Keys are those of Hyperparameters; unswept keys keep their defaults.
+public class SweepRunner {
+
+    private final GridLayout layout;
+    private final int highway, side;
+    private final boolean penalty;
+    private final long ticks;
+
+    private PrintWriter csv;
+    private int runsDone = 0;
+
+    SweepRunner(GridLayout layout, int highway, int side, boolean penalty, long ticks) {
+        this.layout = layout;
+        this.highway = highway;
+        this.side = side;
+        this.penalty = penalty;
+        this.ticks = ticks;
+    }
+
+    // Per-vehicle wait, the number candidates are ranked by, plus the rest for the CSV
+    private static class Result {
+        double meanWait, reward;
+        long throughput, steps;
+        int p95;
+        double co2, wallMs;
+    }
+
+    // One private grid, so runs share nothing and can go in parallel
+    Result run(CityMap.Mode mode, Hyperparameters params, long seed) throws IOException {
+        CityMap map = new CityMap();
+        map.setMode(mode);
+        map.setTrafficParams(highway, side);
+        map.setPenaltyEnabled(penalty);
+        map.setSeed(seed);
+        QTableRegistry tables = new QTableRegistry();
+        tables.setHyperparameters(params);
+        SimulationEngine engine = HeadlessSimulation.buildGrid(map, layout, tables, new PolicyStore());
+
+        long start = System.nanoTime();
+        map.setSimulationRunning(true);
+        engine.run(ticks);
+
+        Result r = new Result();
+        r.wallMs = (System.nanoTime() - start) / 1e6;
+        NodeStore store = map.getStore();
+        long departed = store.sumDepartures();
+        r.meanWait = departed > 0 ? (double) store.sumVehicleWait() / departed : 0.0;
+        r.p95 = store.waitPercentile(0.95);
+        r.throughput = store.sumCarsPassed();
+        r.co2 = store.sumCO2();
+        for (int i = 0; i < layout.size(); i++) {
+            IntersectionController c = (IntersectionController) engine.getController(i);
+            r.reward += c.getRewardTotal();
+            r.steps += c.getRewardSteps();
+        }
+        return r;
+    }
+
+    private synchronized void record(String config, long seed, CityMap.Mode mode, Hyperparameters params, Result r, double bestBaseline) {
+        StringBuilder line = new StringBuilder();
+        line.append(config).append(',').append(seed).append(',').append(mode);
+        for (String key : Hyperparameters.KEYS) line.append(',').append(params.get(key));
+        line.append(String.format(",%d,%.3f,%d,%.1f,%.4f,%.3f,%.2f,%.1f",
+                r.throughput, r.meanWait, r.p95, r.co2, r.steps > 0 ? r.reward / r.steps : 0.0,
+                bestBaseline, bestBaseline > 0 ? 100.0 * (bestBaseline - r.meanWait) / bestBaseline : 0.0, r.wallMs));
+        csv.println(line);
+        csv.flush();
+        runsDone++;
+    }
+
+    void sweep(List<Hyperparameters> candidates, long[] seeds, int workers, String out) throws Exception {
+        csv = new PrintWriter(new FileWriter(out));
+        StringBuilder header = new StringBuilder("Config,Seed,Mode");
+        for (String key : Hyperparameters.KEYS) header.append(',').append(key);
+        header.append(",Throughput,MeanWait,P95Wait,CO2,RewardPerStep,BestBaselineWait,WaitGainPct,WallMs");
+        csv.println(header);
+
+        long start = System.nanoTime();
+        ExecutorService exec = Executors.newFixedThreadPool(workers);
+
+        // Baselines first: the best non-SMART wait per seed is what each candidate is compared to
+        double[] bestBaseline = new double[seeds.length];
+        List<Future<?>> jobs = new ArrayList<>();
+        for (int s = 0; s < seeds.length; s++) {
+            for (CityMap.Mode mode : CityMap.Mode.values()) {
+                if (mode == CityMap.Mode.SMART) continue;
+                long seed = seeds[s];
+                int si = s;
+                jobs.add(exec.submit(() -> {
+                    Result r = run(mode, Hyperparameters.DEFAULTS, seed);
+                    synchronized (bestBaseline) {
+                        if (bestBaseline[si] == 0 || r.meanWait < bestBaseline[si]) bestBaseline[si] = r.meanWait;
+                    }
+                    record("baseline", seed, mode, Hyperparameters.DEFAULTS, r, 0.0);
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> f : jobs) f.get();
+        jobs.clear();
+
+        double[][] waits = new double[candidates.size()][seeds.length];
+        for (int c = 0; c < candidates.size(); c++) {
+            for (int s = 0; s < seeds.length; s++) {
+                int ci = c, si = s;
+                jobs.add(exec.submit(() -> {
+                    Result r = run(CityMap.Mode.SMART, candidates.get(ci), seeds[si]);
+                    waits[ci][si] = r.meanWait;
+                    record("c" + ci, seeds[si], CityMap.Mode.SMART, candidates.get(ci), r, bestBaseline[si]);
+                    return null;
+                }));
+            }
+        }
+        for (Future<?> f : jobs) f.get();
+        exec.shutdown();
+        csv.close();
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d runs on %d workers in %.1fs -> %s%n", runsDone, workers, elapsed, out);
+        printTop(candidates, waits, bestBaseline);
+    }
+
+    private static void printTop(List<Hyperparameters> candidates, double[][] waits, double[] bestBaseline) {
+        double baseline = mean(bestBaseline);
+        List<Integer> order = new ArrayList<>();
+        for (int c = 0; c < candidates.size(); c++) order.add(c);
+        order.sort((a, b) -> Double.compare(mean(waits[a]), mean(waits[b])));
+        System.out.printf("Best baseline mean wait: %.2fs%n", baseline);
+        for (int k = 0; k < Math.min(5, order.size()); k++) {
+            int c = order.get(k);
+            System.out.printf("  c%-4d mean wait %.2fs | %s%n", c, mean(waits[c]), candidates.get(c));
+        }
+    }
+
+    private static double mean(double[] xs) {
+        double s = 0;
+        for (double x : xs) s += x;
+        return xs.length == 0 ? 0.0 : s / xs.length;
+    }
+
+    // Cartesian product of the value lists
+    static List<Hyperparameters> gridSearch(Map<String, double[]> space) {
+        List<Hyperparameters> out = new ArrayList<>();
+        out.add(Hyperparameters.DEFAULTS);
+        for (Map.Entry<String, double[]> e : space.entrySet()) {
+            List<Hyperparameters> next = new ArrayList<>();
+            for (Hyperparameters h : out) {
+                for (double v : e.getValue()) next.add(h.with(e.getKey(), v));
+            }
+            out = next;
+        }
+        return out;
+    }
+
+    // Lists are sampled from, ranges drawn uniformly
+    static List<Hyperparameters> randomSearch(Map<String, double[]> space, Map<String, Boolean> ranges, int samples, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<Hyperparameters> out = new ArrayList<>();
+        for (int k = 0; k < samples; k++) {
+            Hyperparameters h = Hyperparameters.DEFAULTS;
+            for (Map.Entry<String, double[]> e : space.entrySet()) {
+                double[] v = e.getValue();
+                double x = ranges.get(e.getKey()) ? v[0] + rnd.nextDouble() * (v[1] - v[0]) : v[rnd.nextInt(v.length)];
+                h = h.with(e.getKey(), x);
+            }
+            out.add(h);
+        }
+        return out;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, double[]> space = new LinkedHashMap<>();
+        Map<String, Boolean> ranges = new LinkedHashMap<>();
+        boolean random = false;
+        int samples = 50;
+        long[] seeds = {42, 43, 44};
+        long ticks = 3600;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String out = "sweep.csv";
+        int highway = 50, side = 15;
+        boolean penalty = true;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--param" -> {
+                    String[] kv = args[++i].split("=");
+                    Hyperparameters.DEFAULTS.get(kv[0]); // rejects unknown keys up front
+                    boolean range = kv[1].contains(":");
+                    String[] parts = kv[1].split(range ? ":" : ",");
+                    double[] values = new double[parts.length];
+                    for (int k = 0; k < parts.length; k++) values[k] = Double.parseDouble(parts[k]);
+                    space.put(kv[0], values);
+                    ranges.put(kv[0], range);
+                }
+                case "--search" -> random = args[++i].equals("random");
+                case "--samples" -> samples = Integer.parseInt(args[++i]);
+                case "--seeds" -> {
+                    String[] parts = args[++i].split(",");
+                    seeds = new long[parts.length];
+                    for (int k = 0; k < parts.length; k++) seeds[k] = Long.parseLong(parts[k]);
+                }
+                case "--ticks" -> ticks = Long.parseLong(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--out" -> out = args[++i];
+                case "--highway" -> highway = Integer.parseInt(args[++i]);
+                case "--side" -> side = Integer.parseInt(args[++i]);
+                case "--no-penalty" -> penalty = false;
+                case "--rows", "--cols", "--grid-config" -> i++; // read by GridLayout
+                default -> System.out.println("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<Hyperparameters> candidates = random
+                ? randomSearch(space, ranges, samples, RandomStreams.seed(seeds[0], "sweep", RandomStreams.EXPLORATION))
+                : gridSearch(space);
+        GridLayout layout = GridLayout.fromArgs(args);
+        System.out.println("Sweeping " + candidates.size() + " candidates x " + seeds.length + " seeds on a "
+                + layout.getRows() + "x" + layout.getCols() + " grid, " + ticks + " ticks per run");
+        new SweepRunner(layout, highway, side, penalty, ticks).sweep(candidates, seeds, Math.max(1, workers), out);
+    }
+}
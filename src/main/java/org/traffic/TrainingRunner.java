@@ -0,0 +1,196 @@
+package org.traffic;
+
+import agents.IntersectionController;
+import agents.PolicyStore;
+import agents.QTableRegistry;
+import simulation.CityMap;
+import simulation.GridLayout;
+import simulation.NodeStore;
+import simulation.RandomStreams;
+import simulation.SimulationEngine;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Offline SMART training: many short episodes back to back, no JADE, no JavaFX, no wall clock.
+// Each worker owns a full copy of the grid with its own seed and its own brains, and keeps
+// learning across its episodes; every episode starts from empty roads with fresh traffic.
+// Usage: TrainingRunner [--episodes 200] [--episode-ticks 3600] [--workers N] [--seed 42]
+//                       [--highway 50] [--side 15] [--no-penalty] [--share-q NONE|ALL|ROW|DEGREE]
+//                       [--replay 10000] [--replay-batch 32] [--replay-every 10] [--replay-sampling UNIFORM|BACKWARD]
+//                       [--learning-config learning.properties] [--hyper alpha=0.3,gamma=0.9] [--encoder MICRO|NEIGHBOR] [--brain TABULAR|LINEAR]
+//                       [--rows 3] [--cols 3] [--grid-config grid.properties]
+//                       [--out training] [--load-policy q.bin]
+// Writes <out>/curve.csv (one line per episode), <out>/policy-w<k>.bin per worker and
+// <out>/policy.bin, the worker with the lowest mean wait over its last episodes.
+public class TrainingRunner {
+
+    private static final int BEST_WINDOW = 5;
+
+    private final GridLayout layout;
+    private final int highway, side;
+    private final boolean penalty;
+    private final String[] learningArgs;
+    private final Path warmStart;
+
+    private PrintWriter curve;
+    private final long startNanos = System.nanoTime();
+    private int episodesDone = 0;
+
+    TrainingRunner(GridLayout layout, int highway, int side, boolean penalty, String[] learningArgs, Path warmStart) {
+        this.layout = layout;
+        this.highway = highway;
+        this.side = side;
+        this.penalty = penalty;
+        this.learningArgs = learningArgs;
+        this.warmStart = warmStart;
+    }
+
+    // One grid copy and its learners
+    private class Worker {
+        final int id;
+        final long seed;
+        final CityMap map = new CityMap();
+        final PolicyStore policies = new PolicyStore();
+        final SimulationEngine engine;
+        final List<IntersectionController> controllers = new ArrayList<>();
+        // Average waits of this worker's last BEST_WINDOW episodes, by its own episode count
+        final double[] recentWait = new double[BEST_WINDOW];
+        int episodesRun = 0;
+
+        Worker(int id, long seed) throws IOException {
+            this.id = id;
+            this.seed = seed;
+            map.setMode(CityMap.Mode.SMART);
+            map.setTrafficParams(highway, side);
+            map.setPenaltyEnabled(penalty);
+            map.setSeed(seed);
+            if (warmStart != null) policies.load(warmStart);
+            QTableRegistry tables = new QTableRegistry();
+            tables.configure(learningArgs);
+            engine = HeadlessSimulation.buildGrid(map, layout, tables, policies);
+            for (int i = 0; i < layout.size(); i++) controllers.add((IntersectionController) engine.getController(i));
+            map.setSimulationRunning(true);
+        }
+
+        void runEpisode(int episode, long ticks) {
+            NodeStore store = map.getStore();
+            store.setSeed(RandomStreams.seed(seed, "episode " + episode, RandomStreams.ARRIVALS));
+            for (IntersectionController c : controllers) c.startEpisode();
+
+            long start = System.nanoTime();
+            engine.run(ticks);
+            long wall = System.nanoTime() - start;
+
+            double reward = 0;
+            long steps = 0;
+            for (IntersectionController c : controllers) {
+                reward += c.getRewardTotal();
+                steps += c.getRewardSteps();
+            }
+            long departed = store.sumDepartures();
+            double avgWait = departed > 0 ? (double) store.sumVehicleWait() / departed : 0.0;
+            recentWait[episodesRun++ % BEST_WINDOW] = avgWait;
+            record(id, episode, reward, steps, avgWait, store.sumCarsPassed(), wall);
+        }
+
+        double recentMeanWait() {
+            double s = 0;
+            int n = Math.min(episodesRun, BEST_WINDOW);
+            if (n == 0) return Double.MAX_VALUE;
+            for (int k = 0; k < n; k++) s += recentWait[k];
+            return s / n;
+        }
+    }
+
+    private synchronized void record(int worker, int episode, double reward, long steps, double avgWait, long passed, long wallNanos) {
+        episodesDone++;
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        double perStep = steps > 0 ? reward / steps : 0.0;
+        curve.printf("%d,%d,%.1f,%.4f,%d,%.3f,%d,%.1f,%.3f%n",
+                worker, episode, reward, perStep, steps, avgWait, passed, wallNanos / 1e6, episodesDone / elapsed);
+        curve.flush();
+        System.out.printf("worker %d episode %d | reward/step %.3f | avg wait %.2fs | %.2f episodes/s%n",
+                worker, episode, perStep, avgWait, episodesDone / elapsed);
+    }
+
+    void train(int workers, int episodes, long ticks, long masterSeed, Path out) throws Exception {
+        Files.createDirectories(out);
+        curve = new PrintWriter(new FileWriter(out.resolve("curve.csv").toFile()));
+        curve.println("Worker,Episode,Reward,RewardPerStep,Steps,AvgWait,Throughput,WallMs,EpisodesPerSec");
+
+        List<Worker> pool = new ArrayList<>();
+        for (int w = 0; w < workers; w++) pool.add(new Worker(w, RandomStreams.seed(masterSeed, "worker " + w, RandomStreams.EXPLORATION)));
+
+        // Worker w runs episodes w, w + workers, ... so the total is spread evenly
+        ExecutorService exec = Executors.newFixedThreadPool(workers);
+        List<Future<?>> jobs = new ArrayList<>();
+        for (Worker worker : pool) {
+            jobs.add(exec.submit(() -> {
+                for (int e = worker.id; e < episodes; e += workers) worker.runEpisode(e, ticks);
+                return null;
+            }));
+        }
+        for (Future<?> f : jobs) f.get();
+        exec.shutdown();
+        curve.close();
+
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        Worker best = pool.get(0);
+        for (Worker worker : pool) {
+            worker.policies.saveAsync(out.resolve("policy-w" + worker.id + ".bin")).join();
+            if (worker.recentMeanWait() < best.recentMeanWait()) best = worker;
+        }
+        Files.copy(out.resolve("policy-w" + best.id + ".bin"), out.resolve("policy.bin"), StandardCopyOption.REPLACE_EXISTING);
+
+        System.out.printf("%d episodes x %d ticks on %d workers in %.1fs -> %.2f episodes/s, %.0f sim-s/wall-s%n",
+                episodes, ticks, workers, elapsed, episodes / elapsed, episodes * ticks * SimulationEngine.SECONDS_PER_TICK / elapsed);
+        System.out.printf("Best policy: worker %d (mean wait %.2fs over its last episodes) -> %s%n",
+                best.id, best.recentMeanWait(), out.resolve("policy.bin"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int episodes = 200;
+        long ticks = 3600;
+        int workers = Runtime.getRuntime().availableProcessors();
+        long seed = RandomStreams.DEFAULT_SEED;
+        int highway = 50, side = 15;
+        boolean penalty = true;
+        Path out = Paths.get("training");
+        Path warmStart = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--episodes" -> episodes = Integer.parseInt(args[++i]);
+                case "--episode-ticks" -> ticks = Long.parseLong(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--highway" -> highway = Integer.parseInt(args[++i]);
+                case "--side" -> side = Integer.parseInt(args[++i]);
+                case "--no-penalty" -> penalty = false;
+                case "--share-q", "--replay", "--replay-batch", "--replay-every", "--replay-sampling",
+                     "--learning-config", "--hyper", "--encoder", "--brain" -> i++; // read by QTableRegistry
+                case "--out" -> out = Paths.get(args[++i]);
+                case "--load-policy" -> warmStart = Paths.get(args[++i]);
+                case "--rows", "--cols", "--grid-config" -> i++; // read by GridLayout
+                default -> System.out.println("Unknown argument: " + args[i]);
+            }
+        }
+        workers = Math.max(1, Math.min(workers, episodes));
+
+        GridLayout layout = GridLayout.fromArgs(args);
+        System.out.println("Training " + layout.getRows() + "x" + layout.getCols() + " SMART grid: "
+                + episodes + " episodes of " + ticks + " ticks on " + workers + " workers");
+        new TrainingRunner(layout, highway, side, penalty, args, warmStart).train(workers, episodes, ticks, seed, out);
+    }
+}
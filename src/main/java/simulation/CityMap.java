@@ -1,5 +1,9 @@
 package simulation;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -9,15 +13,22 @@ import java.io.PrintWriter;
 
 public class CityMap {
 
-    // Singleton
-    private static CityMap instance;
+    // Singleton, created eagerly so agents read it without taking a lock
+    private static final CityMap instance = new CityMap();
 
-    // All intersections
+    // All intersections: state lives in the store, views are looked up by dense id or name
+    private final NodeStore store = new NodeStore(this, 16);
+    // Written under the lock, read without it: every write ends by storing the (volatile) field
+    private volatile TrafficNode[] nodesById = new TrafficNode[16];
     private final Map<String, TrafficNode> intersections = new ConcurrentHashMap<>();
 
+    // Downstream links declared by name, and the nodes still waiting for a neighbour to exist
+    private final Map<String, String[]> links = new HashMap<>();
+    private final Map<String, List<String>> waitingFor = new HashMap<>();
+
     // Control Flags
-    private boolean simulationRunning = false;
-    private boolean penaltyEnabled = true;
+    private volatile boolean simulationRunning = false;
+    private volatile boolean penaltyEnabled = true;
 
     private long ambulanceStartTime = 0;
     private double finalAmbulanceTime = 0.0;
@@ -30,25 +41,90 @@ public class CityMap {
         SMART
     }
 
-    private Mode currentMode = Mode.BASELINE_FIXED;
+    private volatile Mode currentMode = Mode.BASELINE_FIXED;
 
-    private CityMap() {}
+    private volatile StartupReport startupReport = null;
 
-    public static synchronized CityMap getInstance() {
-        if (instance == null) {
-            instance = new CityMap();
-        }
+    // The shared map behind the GUI and the JADE agents is getInstance(); offline tools
+    // (training, sweeps) build private maps so several grids can run side by side
+    public CityMap() {}
+
+    public static CityMap getInstance() {
         return instance;
     }
 
-    public void addIntersection(String name, TrafficNode node) {
+    // Pre-sizes the store before bulk creation
+    public synchronized void reserve(int count) {
+        store.ensureCapacity(count);
+        if (nodesById.length < count) nodesById = Arrays.copyOf(nodesById, count);
+    }
+
+    public synchronized TrafficNode createIntersection(String name, int x, int y) {
+        int id = store.add(name, x, y);
+        TrafficNode[] byId = nodesById;
+        if (id >= byId.length) byId = Arrays.copyOf(byId, Math.max(id + 1, byId.length * 2));
+        TrafficNode node = new TrafficNode(store, id);
+        byId[id] = node;
+        nodesById = byId; // publishes the new slot to getIntersection(int)
         intersections.put(name, node);
+        applyLinks(name);
+        List<String> waiting = waitingFor.remove(name);
+        if (waiting != null) for (String upstream : waiting) applyLinks(upstream);
+        return node;
+    }
+
+    // Agents come up in any order, so a link is applied to the store once both ends exist
+    public synchronized void connect(String name, String south, String east) {
+        links.put(name, new String[]{south, east});
+        applyLinks(name);
+        for (String target : links.get(name)) {
+            if (target != null && !intersections.containsKey(target)) {
+                waitingFor.computeIfAbsent(target, k -> new ArrayList<>()).add(name);
+            }
+        }
+    }
+
+    private void applyLinks(String name) {
+        TrafficNode node = intersections.get(name);
+        String[] downstream = links.get(name);
+        if (node == null || downstream == null) return;
+        store.connect(node.getIndex(), indexOf(downstream[0]), indexOf(downstream[1]));
+    }
+
+    private int indexOf(String name) {
+        TrafficNode node = name == null ? null : intersections.get(name);
+        return node == null ? -1 : node.getIndex();
     }
 
     public TrafficNode getIntersection(String name) {
         return intersections.get(name);
     }
 
+    public TrafficNode getIntersection(int id) {
+        return nodesById[id];
+    }
+
+    public NodeStore getStore() {
+        return store;
+    }
+
+    // Master seed for every random stream; set before the grid is built
+    public void setSeed(long seed) {
+        store.setSeed(seed);
+    }
+
+    public long getSeed() {
+        return store.getSeed();
+    }
+
+    public StartupReport getStartupReport() {
+        return startupReport;
+    }
+
+    public void setStartupReport(StartupReport report) {
+        this.startupReport = report;
+    }
+
     public Map<String, TrafficNode> getAllIntersections() {
         return intersections;
     }
@@ -77,10 +153,10 @@ public class CityMap {
         return this.currentMode;
     }
 
-    // Reset entire simulation
+    // Reset entire simulation; each node is cleared by its owner when it next begins a tick
     public void resetAll() {
-        for (TrafficNode node : intersections.values()) {
-            node.reset();
+        for (int i = 0; i < store.size(); i++) {
+            store.reset(i);
         }
         ambulanceStartTime = 0;
         finalAmbulanceTime = 0.0;
@@ -0,0 +1,96 @@
+package simulation;
+
+import java.util.Arrays;
+
+// Next-event queue of (tick, node) pairs on a primitive binary heap.
+// Each node keeps only its earliest pending wake-up; later duplicates are dropped on pop.
+// Busy nodes wake every tick, so wake-ups for the very next tick skip the heap.
+public class EventScheduler {
+
+    private long[] heap = new long[64];
+    private int size = 0;
+    private long[] pendingAt;
+
+    private int[] soon;
+    private int soonSize = 0;
+    private long current = Long.MIN_VALUE;
+
+    public EventScheduler(int nodes) {
+        pendingAt = new long[Math.max(1, nodes)];
+        Arrays.fill(pendingAt, Long.MAX_VALUE);
+        soon = new int[pendingAt.length];
+    }
+
+    public void schedule(int node, long tick) {
+        if (node >= pendingAt.length) {
+            int old = pendingAt.length;
+            pendingAt = Arrays.copyOf(pendingAt, Math.max(node + 1, old * 2));
+            Arrays.fill(pendingAt, old, pendingAt.length, Long.MAX_VALUE);
+            soon = Arrays.copyOf(soon, pendingAt.length);
+        }
+        if (tick >= pendingAt[node]) return;
+        pendingAt[node] = tick;
+        if (current != Long.MIN_VALUE && tick == current + 1) {
+            soon[soonSize++] = node;
+            return;
+        }
+        if (size == heap.length) heap = Arrays.copyOf(heap, size * 2);
+        heap[size] = (tick << 32) | node;
+        siftUp(size++);
+    }
+
+    public boolean isScheduled(int node) {
+        return node < pendingAt.length && pendingAt[node] != Long.MAX_VALUE;
+    }
+
+    // Pops every node due at or before tick into out; returns the count
+    public int drain(long tick, int[] out) {
+        int n = 0;
+        for (int k = 0; k < soonSize; k++) {
+            int node = soon[k];
+            if (pendingAt[node] != current + 1) continue; // superseded
+            pendingAt[node] = Long.MAX_VALUE;
+            out[n++] = node;
+        }
+        soonSize = 0;
+        current = tick;
+        while (size > 0 && (heap[0] >>> 32) <= tick) {
+            long key = heap[0];
+            heap[0] = heap[--size];
+            if (size > 0) siftDown(0);
+            int node = (int) key;
+            if (pendingAt[node] != (key >>> 32)) continue; // superseded, or already popped
+            pendingAt[node] = Long.MAX_VALUE;
+            out[n++] = node;
+        }
+        return n;
+    }
+
+    public int pendingCount() {
+        return size + soonSize;
+    }
+
+    private void siftUp(int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private void siftDown(int i) {
+        long key = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (key <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
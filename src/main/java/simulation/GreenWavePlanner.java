@@ -0,0 +1,207 @@
+package simulation;
+
+import java.util.Arrays;
+
+// Central green-wave coordination: every node runs a fixed cycle, north-south green for the
+// first greenNS ticks after its offset and east-west green for the rest, and the offsets are
+// chained along the corridors so a platoon released upstream finds the light green.
+//
+// Each node follows the corridor carrying more of its measured flow: a north-south node opens
+// its north-south green one hop after its north neighbour does, an east-west node its
+// east-west green one hop after its west neighbour, both moved earlier by the queue already
+// waiting there. Offsets only depend on the upstream neighbour, so one pass in upstream-first
+// order covers the grid. Between passes only nodes whose inputs changed (corridor, split,
+// queue delay) and the nodes chained behind them are recomputed and pushed again.
+public class GreenWavePlanner {
+
+    // Receives a node's new schedule: NS green while (clock - offset) mod cycle < greenNS
+    public interface Listener {
+        void onSchedule(int node, int offset, int greenNS, int cycle);
+    }
+
+    public static final int DEFAULT_CYCLE = 40;
+    public static final int DEFAULT_PERIOD = 60;
+    private static final int MIN_GREEN = 5;
+    private static final int HOP_TICKS = 1;
+    private static final double SMOOTHING = 0.5;
+    // Queue delay and split drift by this much before a node is replanned
+    private static final int TOLERANCE = 2;
+
+    private final NodeStore store;
+    private final int cycle;
+
+    private int n = 0;
+    private int builtVersion = -1;
+    // Upstream-first order (every node after its north and west neighbours)
+    private int[] order = new int[0];
+
+    // Measurements, smoothed across planning passes
+    private double[] flowNS = new double[0], flowEW = new double[0];
+    private double[] waitingNS = new double[0], waitingEW = new double[0];
+    private int[] lastPassedNS = new int[0], lastPassedEW = new int[0];
+    private long lastTick = -1;
+
+    // Inputs of the last pass and the schedules pushed
+    private boolean[] followsNS = new boolean[0];
+    private int[] delay = new int[0];
+    private int[] offset = new int[0];
+    private int[] greenNS = new int[0];
+    private boolean[] planned = new boolean[0];
+    private boolean[] changed = new boolean[0];
+
+    private long passes = 0, recomputed = 0;
+
+    public GreenWavePlanner(NodeStore store) {
+        this(store, DEFAULT_CYCLE);
+    }
+
+    public GreenWavePlanner(NodeStore store, int cycle) {
+        this.store = store;
+        this.cycle = Math.max(2 * MIN_GREEN, cycle);
+    }
+
+    public int getCycle() {
+        return cycle;
+    }
+
+    // Measures flows since the last call, replans what changed and pushes it; returns the
+    // number of schedules pushed. Call from one thread, every period ticks or so.
+    public int plan(long tick, Listener listener) {
+        prepare();
+        long elapsed = lastTick < 0 ? 0 : Math.max(1, tick - lastTick);
+        lastTick = tick;
+        for (int i = 0; i < n; i++) measure(i, elapsed);
+
+        passes++;
+        int pushed = 0;
+        for (int k = 0; k < n; k++) {
+            int i = order[k];
+            boolean ns = flowNS[i] >= flowEW[i];
+            int up = ns ? store.northOf[i] : store.westOf[i];
+            int d = (int) Math.min(cycle / 2, Math.round(ns ? waitingNS[i] : waitingEW[i]));
+            int g = split(i);
+
+            boolean inputsChanged = !planned[i] || ns != followsNS[i]
+                    || Math.abs(d - delay[i]) > TOLERANCE || Math.abs(g - greenNS[i]) > TOLERANCE;
+            changed[i] = false;
+            if (!inputsChanged) {
+                if (up < 0 || !changed[up]) continue;
+                // Only the upstream offset moved: keep this node's own inputs
+                d = delay[i];
+                g = greenNS[i];
+            }
+
+            // Start of the followed green at the upstream node, one hop later here, minus the queue
+            int start;
+            if (up < 0) start = ns ? offset[i] : offset[i] + greenNS[i];
+            else start = (ns ? offset[up] : offset[up] + greenNS[up]) + HOP_TICKS - d;
+            int o = Math.floorMod(ns ? start : start - g, cycle);
+
+            recomputed++;
+            followsNS[i] = ns;
+            delay[i] = d;
+            if (planned[i] && o == offset[i] && g == greenNS[i]) continue;
+            planned[i] = true;
+            offset[i] = o;
+            greenNS[i] = g;
+            changed[i] = true;
+            listener.onSchedule(i, o, g, cycle);
+            pushed++;
+        }
+        return pushed;
+    }
+
+    // North-south share of the cycle, in proportion to the measured flows
+    private int split(int i) {
+        double total = flowNS[i] + flowEW[i];
+        int g = total <= 0 ? cycle / 2 : (int) Math.round(cycle * flowNS[i] / total);
+        return Math.max(MIN_GREEN, Math.min(cycle - MIN_GREEN, g));
+    }
+
+    private void measure(int i, long elapsed) {
+        int passed = store.totalCarsPassed[i];
+        int ns = store.passedNorthSouth[i];
+        int ew = passed - ns;
+        // A reset node starts counting again
+        int dNS = ns - lastPassedNS[i], dEW = ew - lastPassedEW[i];
+        if (dNS < 0 || dEW < 0) dNS = dEW = 0;
+        lastPassedNS[i] = ns;
+        lastPassedEW[i] = ew;
+        if (elapsed > 0) {
+            flowNS[i] += SMOOTHING * ((double) dNS / elapsed - flowNS[i]);
+            flowEW[i] += SMOOTHING * ((double) dEW / elapsed - flowEW[i]);
+        }
+        waitingNS[i] += SMOOTHING * (Math.max(0, store.queueNS(i)) - waitingNS[i]);
+        waitingEW[i] += SMOOTHING * (Math.max(0, store.queueEW(i)) - waitingEW[i]);
+    }
+
+    private void prepare() {
+        int size = store.size();
+        if (size > flowNS.length) {
+            flowNS = grow(flowNS, size);
+            flowEW = grow(flowEW, size);
+            waitingNS = grow(waitingNS, size);
+            waitingEW = grow(waitingEW, size);
+            lastPassedNS = grow(lastPassedNS, size);
+            lastPassedEW = grow(lastPassedEW, size);
+            delay = grow(delay, size);
+            offset = grow(offset, size);
+            greenNS = grow(greenNS, size);
+            followsNS = grow(followsNS, size);
+            planned = grow(planned, size);
+            changed = grow(changed, size);
+        }
+        n = size;
+        if (builtVersion != store.getTopologyVersion()) buildOrder();
+    }
+
+    // Kahn's algorithm over the north and west links; a cycle can't occur on a street grid,
+    // but anything left over is appended so every node is still planned
+    private void buildOrder() {
+        builtVersion = store.getTopologyVersion();
+        int[] pending = new int[n];
+        int[] out = new int[n];
+        int head = 0, tail = 0;
+        for (int i = 0; i < n; i++) {
+            if (store.northOf[i] >= 0) pending[i]++;
+            if (store.westOf[i] >= 0) pending[i]++;
+            if (pending[i] == 0) out[tail++] = i;
+        }
+        while (head < tail) {
+            int i = out[head++];
+            int s = store.southOf[i], e = store.eastOf[i];
+            if (s >= 0 && --pending[s] == 0) out[tail++] = s;
+            if (e >= 0 && --pending[e] == 0) out[tail++] = e;
+        }
+        for (int i = 0; i < n && tail < n; i++) if (pending[i] > 0) out[tail++] = i;
+        order = out;
+        // Chains follow the new order from scratch
+        Arrays.fill(planned, 0, n, false);
+    }
+
+    // The node's schedule did not arrive; it is pushed again on the next pass
+    public void invalidate(int node) {
+        if (node < planned.length) planned[node] = false;
+    }
+
+    public long getPasses() {
+        return passes;
+    }
+
+    // Node schedules recomputed over all passes (a full pass recomputes every node)
+    public long getRecomputed() {
+        return recomputed;
+    }
+
+    private static double[] grow(double[] a, int n) {
+        return Arrays.copyOf(a, Math.max(n, a.length * 2));
+    }
+
+    private static int[] grow(int[] a, int n) {
+        return Arrays.copyOf(a, Math.max(n, a.length * 2));
+    }
+
+    private static boolean[] grow(boolean[] a, int n) {
+        return Arrays.copyOf(a, Math.max(n, a.length * 2));
+    }
+}
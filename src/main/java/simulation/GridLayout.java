@@ -0,0 +1,109 @@
+package simulation;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+// Names, screen positions and neighbours of an R x C intersection grid.
+// Sized from a properties file (--grid-config) and/or --rows / --cols flags; defaults to 3x3.
+public class GridLayout {
+
+    public static final int DEFAULT_SIZE = 3;
+    public static final int SPACING = 200;
+    public static final int OFFSET = 150;
+
+    private final int rows;
+    private final int cols;
+    private final int spacing;
+    private final int offset;
+
+    public GridLayout(int rows, int cols) {
+        this(rows, cols, SPACING, OFFSET);
+    }
+
+    public GridLayout(int rows, int cols, int spacing, int offset) {
+        if (rows < 1 || cols < 1) throw new IllegalArgumentException("Grid must be at least 1x1: " + rows + "x" + cols);
+        this.rows = rows;
+        this.cols = cols;
+        this.spacing = spacing;
+        this.offset = offset;
+    }
+
+    // Flags override the file. Unrelated arguments are ignored so callers can share argv.
+    public static GridLayout fromArgs(String[] args) throws IOException {
+        Properties p = new Properties();
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--grid-config")) {
+                try (FileReader r = new FileReader(args[i + 1])) { p.load(r); }
+            }
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--rows")) p.setProperty("rows", args[i + 1]);
+            if (args[i].equals("--cols")) p.setProperty("cols", args[i + 1]);
+        }
+        int rows = Integer.parseInt(p.getProperty("rows", String.valueOf(DEFAULT_SIZE)));
+        int cols = Integer.parseInt(p.getProperty("cols", String.valueOf(rows)));
+        int spacing = Integer.parseInt(p.getProperty("spacing", String.valueOf(SPACING)));
+        int offset = Integer.parseInt(p.getProperty("offset", String.valueOf(OFFSET)));
+        return new GridLayout(rows, cols, spacing, offset);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int size() {
+        return rows * cols;
+    }
+
+    public int getSpacing() {
+        return spacing;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public static String nodeName(int row, int col) {
+        return "Node_" + row + "_" + col;
+    }
+
+    public int screenX(int col) {
+        return offset + (col * spacing);
+    }
+
+    public int screenY(int row) {
+        return offset + (row * spacing);
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < rows && col >= 0 && col < cols;
+    }
+
+    // Downstream neighbours (streets run N->S and W->E), null at the edge
+    public String southOf(int row, int col) {
+        return contains(row + 1, col) ? nodeName(row + 1, col) : null;
+    }
+
+    public String eastOf(int row, int col) {
+        return contains(row, col + 1) ? nodeName(row, col + 1) : null;
+    }
+
+    // Agent arguments: x, y, then neighbours tagged with their direction (N:, S:, W:, E:)
+    public Object[] agentArguments(int row, int col) {
+        List<Object> a = new ArrayList<>();
+        a.add(screenX(col));
+        a.add(screenY(row));
+        if (contains(row - 1, col)) a.add("N:" + nodeName(row - 1, col));
+        if (contains(row + 1, col)) a.add("S:" + nodeName(row + 1, col));
+        if (contains(row, col - 1)) a.add("W:" + nodeName(row, col - 1));
+        if (contains(row, col + 1)) a.add("E:" + nodeName(row, col + 1));
+        return a.toArray();
+    }
+}
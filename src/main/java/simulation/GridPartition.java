@@ -0,0 +1,79 @@
+package simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Splits a grid into horizontal bands of whole rows, one per JADE container (one JVM each).
+// Streets run N->S and W->E, so only south-bound traffic crosses a band edge: east-bound
+// traffic never leaves its partition, and every boundary link is a column crossing.
+// Bands differ in height by at most one row.
+public class GridPartition {
+
+    private final GridLayout layout;
+    private final int partitions;
+
+    public GridPartition(GridLayout layout, int partitions) {
+        if (partitions < 1) throw new IllegalArgumentException("Need at least one partition: " + partitions);
+        this.layout = layout;
+        this.partitions = Math.min(partitions, layout.getRows());
+    }
+
+    // --partitions K (default 1). Unrelated arguments are ignored.
+    public static GridPartition fromArgs(GridLayout layout, String[] args) {
+        int k = 1;
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("--partitions")) k = Integer.parseInt(args[i + 1]);
+        }
+        return new GridPartition(layout, k);
+    }
+
+    public GridLayout getLayout() {
+        return layout;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public int firstRow(int p) {
+        return (int) ((long) layout.getRows() * p / partitions);
+    }
+
+    // Exclusive
+    public int endRow(int p) {
+        return firstRow(p + 1);
+    }
+
+    public int partitionOf(int row) {
+        // Inverse of firstRow: the last band starting at or before row
+        int p = (int) ((long) row * partitions / layout.getRows());
+        while (p > 0 && firstRow(p) > row) p--;
+        while (p + 1 < partitions && firstRow(p + 1) <= row) p++;
+        return p;
+    }
+
+    public int size(int p) {
+        return (endRow(p) - firstRow(p)) * layout.getCols();
+    }
+
+    public static String containerName(int p) {
+        return "Partition-" + p;
+    }
+
+    // Agent arguments as in GridLayout, plus "R:<dir>" for each neighbour owned by another partition
+    public Object[] agentArguments(int row, int col) {
+        List<Object> a = new ArrayList<>(Arrays.asList(layout.agentArguments(row, col)));
+        int p = partitionOf(row);
+        if (layout.contains(row - 1, col) && partitionOf(row - 1) != p) a.add("R:N");
+        if (layout.contains(row + 1, col) && partitionOf(row + 1) != p) a.add("R:S");
+        return a.toArray();
+    }
+
+    // Intersections on a band edge, i.e. with a neighbour in another partition
+    public int boundaryNodes(int p) {
+        int edges = (p > 0 ? 1 : 0) + (p + 1 < partitions ? 1 : 0);
+        if (endRow(p) - firstRow(p) == 1) return edges > 0 ? layout.getCols() : 0;
+        return edges * layout.getCols();
+    }
+}
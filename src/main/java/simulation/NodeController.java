@@ -0,0 +1,34 @@
+package simulation;
+
+// Decision logic attached to one intersection, stepped once per simulated second.
+// The engine runs each phase for every node before starting the next one.
+public interface NodeController {
+
+    int nodeId();
+
+    // Timers, reset handling and end-of-run reporting; runs even while the simulation is stopped
+    void beginTick();
+
+    // Arrivals and local flow; cars leaving the node are posted to the NodeStore
+    void physics();
+
+    // The posted outflow was admitted or refused by the neighbour
+    void afterTransfer(boolean accepted);
+
+    // Observe the settled state and act on the light
+    void decide();
+
+    // All phases back to back for a node driven on its own (JADE ticker)
+    void tick();
+
+    // Event-driven mode: earliest tick this node must be stepped again, given that the
+    // tick just stepped was now. now + 1 means "busy, keep stepping".
+    long nextWakeTick(long now);
+
+    // Event-driven mode: the node slept through this many ticks; age its timers accordingly
+    void catchUp(long skippedTicks);
+
+    // The run has stopped: end-of-run reports and hooks. The engine calls it on the stepping
+    // thread in node order, outside the sharded phases; a JADE ticker from its own tick()
+    void endRun(boolean printTable);
+}
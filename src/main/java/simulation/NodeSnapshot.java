@@ -0,0 +1,16 @@
+package simulation;
+
+// Point-in-time copy of one intersection, filled by NodeStore.snapshot().
+// Reusable so readers polling every frame don't allocate.
+public class NodeSnapshot {
+    public int queueNS;
+    public int queueEW;
+    public boolean greenNS;
+    public boolean inTransition;
+    public double pheromone;
+    public int totalPassed;
+    public long totalWaitTime;
+    public double totalCO2;
+    public boolean sensorsWorking;
+    public boolean hasAmbulance;
+}
@@ -0,0 +1,736 @@
+package simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+// Structure-of-arrays storage for every intersection, indexed by dense node id.
+// TrafficNode is a thin view over one slot; sweeps over all nodes walk the arrays directly.
+//
+// Thread safety: a slot is stepped by one owner (its agent or engine shard) while neighbours
+// admit cars into it and the UI reads it. Queues are updated with CAS so admissions can never
+// lose an update or overshoot maxCapacity; counters touched by other threads are a single cell
+// per node updated with getAndAdd, and the aggregate sweeps sum them across nodes. The owner's
+// multi-field updates are wrapped in a per-node seqlock so snapshot() never sees them half done.
+// No locks on the hot path. Arrays are only reallocated while nodes are being created.
+//
+// Every car carries its entry tick through a per-approach ring, so a departure yields its exact
+// wait. Rings are owner-only: cars admitted from another thread are counted in an inbox and
+// stamped when the owner next steps, which costs them at most one tick of measured wait.
+public class NodeStore {
+
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BOOLS = MethodHandles.arrayElementVarHandle(boolean[].class);
+
+    public static final int DEFAULT_MAX_CAPACITY = 20; // Max cars allowed on a road segment
+
+    // Outflow target for a neighbour kept in another store (another partition's JVM)
+    public static final int REMOTE = -2;
+
+    // Wait histogram: 1 tick buckets up to 16, then 2 buckets per power of two
+    public static final int WAIT_BUCKETS = 64;
+
+    private final CityMap map;
+    private final int maxCapacity;
+    private final int ringSize;
+    private volatile long seed = RandomStreams.DEFAULT_SEED;
+    private int size = 0;
+    // Bumped whenever nodes or links are added
+    private volatile int topologyVersion = 0;
+    private final PheromoneField pheromones = new PheromoneField(this);
+
+    // Identity
+    String[] ids;
+    int[] x, y;
+
+    // Queues and signal state
+    int[] carsNorthSouth;
+    int[] carsEastWest;
+    boolean[] greenForNorthSouth;
+    int[] transitionTimer;
+    int[] currentThreshold;
+    boolean[] resetRequested;
+    double[] congestionPheromone;
+
+    // Metrics
+    int[] totalCarsPassed;
+    int[] passedNorthSouth; // of which on the north-south approach
+    long[] cumulativeQueueSum;
+    long[] ticksCount;
+    long[] totalWaitTime;
+    double[] totalCO2;
+
+    // Event Flags
+    boolean[] sensorsWorking;
+    boolean[] hasAmbulance;
+
+    // Seqlock version per node, odd while the owner is mid-update
+    int[] version;
+
+    // Per-node arrivals stream (SplitMix64 state), see RandomStreams
+    long[] rngSeed;
+
+    // Downstream / upstream neighbours by dense id (-1 = none)
+    int[] southOf, eastOf, northOf, westOf;
+
+    // Outflow posted during the first phase of a tick, settled in the second
+    int[] outTarget;
+    int[] outAmount;
+    boolean[] outSouthBound;
+    boolean[] outAccepted;
+    int[] ambulanceTarget;
+
+    // End of the green-wave platoon announced to a node (its clock), 0 = none pending
+    int[] waveUntil;
+
+    // Per-vehicle entry ticks, one FIFO ring per approach (2 * node for NS, 2 * node + 1 for EW).
+    // Admissions are capped at maxCapacity, so the flat ringSize slots hold them; only uncapped
+    // arrivals (highway generation, ambulances) can outgrow it, and then that approach moves to
+    // a private ring of twice the size.
+    int[] clock;
+    int[] entryTicks;
+    int[][] grownRing;
+    int[] ringHead, ringCount;
+    int[] inbox;
+
+    // Cars that left in processFlow, popped from the ring once settleOutflow knows their fate
+    int[] stagedCars;
+    boolean[] stagedNS;
+
+    // Exact per-vehicle waits
+    long[] vehicleWaitSum;
+    long[] departures;
+    int[] waitHistogram;
+
+    // A store outside any map reads its traffic settings from the shared one
+    public NodeStore(int initialCapacity) {
+        this(CityMap.getInstance(), initialCapacity);
+    }
+
+    public NodeStore(CityMap map, int initialCapacity) {
+        this(map, initialCapacity, DEFAULT_MAX_CAPACITY);
+    }
+
+    public NodeStore(CityMap map, int initialCapacity, int maxCapacity) {
+        this.map = map;
+        this.maxCapacity = maxCapacity;
+        this.ringSize = Integer.highestOneBit(Math.max(1, maxCapacity - 1)) << 1;
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    private void allocate(int n) {
+        ids = new String[n];
+        x = new int[n];
+        y = new int[n];
+        carsNorthSouth = new int[n];
+        carsEastWest = new int[n];
+        greenForNorthSouth = new boolean[n];
+        transitionTimer = new int[n];
+        currentThreshold = new int[n];
+        resetRequested = new boolean[n];
+        congestionPheromone = new double[n];
+        totalCarsPassed = new int[n];
+        passedNorthSouth = new int[n];
+        cumulativeQueueSum = new long[n];
+        ticksCount = new long[n];
+        totalWaitTime = new long[n];
+        totalCO2 = new double[n];
+        sensorsWorking = new boolean[n];
+        hasAmbulance = new boolean[n];
+        version = new int[n];
+        rngSeed = new long[n];
+        southOf = new int[n];
+        eastOf = new int[n];
+        northOf = new int[n];
+        westOf = new int[n];
+        outTarget = new int[n];
+        outAmount = new int[n];
+        outSouthBound = new boolean[n];
+        outAccepted = new boolean[n];
+        ambulanceTarget = new int[n];
+        waveUntil = new int[n];
+        clock = new int[n];
+        entryTicks = new int[n * 2 * ringSize];
+        grownRing = new int[n * 2][];
+        ringHead = new int[n * 2];
+        ringCount = new int[n * 2];
+        inbox = new int[n * 2];
+        stagedCars = new int[n];
+        stagedNS = new boolean[n];
+        vehicleWaitSum = new long[n];
+        departures = new long[n];
+        waitHistogram = new int[n * WAIT_BUCKETS];
+    }
+
+    public synchronized void ensureCapacity(int n) {
+        if (n <= ids.length) return;
+        int cap = Math.max(n, ids.length * 2);
+        ids = Arrays.copyOf(ids, cap);
+        x = Arrays.copyOf(x, cap);
+        y = Arrays.copyOf(y, cap);
+        carsNorthSouth = Arrays.copyOf(carsNorthSouth, cap);
+        carsEastWest = Arrays.copyOf(carsEastWest, cap);
+        greenForNorthSouth = Arrays.copyOf(greenForNorthSouth, cap);
+        transitionTimer = Arrays.copyOf(transitionTimer, cap);
+        currentThreshold = Arrays.copyOf(currentThreshold, cap);
+        resetRequested = Arrays.copyOf(resetRequested, cap);
+        congestionPheromone = Arrays.copyOf(congestionPheromone, cap);
+        totalCarsPassed = Arrays.copyOf(totalCarsPassed, cap);
+        passedNorthSouth = Arrays.copyOf(passedNorthSouth, cap);
+        cumulativeQueueSum = Arrays.copyOf(cumulativeQueueSum, cap);
+        ticksCount = Arrays.copyOf(ticksCount, cap);
+        totalWaitTime = Arrays.copyOf(totalWaitTime, cap);
+        totalCO2 = Arrays.copyOf(totalCO2, cap);
+        sensorsWorking = Arrays.copyOf(sensorsWorking, cap);
+        hasAmbulance = Arrays.copyOf(hasAmbulance, cap);
+        version = Arrays.copyOf(version, cap);
+        rngSeed = Arrays.copyOf(rngSeed, cap);
+        southOf = Arrays.copyOf(southOf, cap);
+        eastOf = Arrays.copyOf(eastOf, cap);
+        northOf = Arrays.copyOf(northOf, cap);
+        westOf = Arrays.copyOf(westOf, cap);
+        outTarget = Arrays.copyOf(outTarget, cap);
+        outAmount = Arrays.copyOf(outAmount, cap);
+        outSouthBound = Arrays.copyOf(outSouthBound, cap);
+        outAccepted = Arrays.copyOf(outAccepted, cap);
+        ambulanceTarget = Arrays.copyOf(ambulanceTarget, cap);
+        waveUntil = Arrays.copyOf(waveUntil, cap);
+        clock = Arrays.copyOf(clock, cap);
+        entryTicks = Arrays.copyOf(entryTicks, cap * 2 * ringSize);
+        grownRing = Arrays.copyOf(grownRing, cap * 2);
+        ringHead = Arrays.copyOf(ringHead, cap * 2);
+        ringCount = Arrays.copyOf(ringCount, cap * 2);
+        inbox = Arrays.copyOf(inbox, cap * 2);
+        stagedCars = Arrays.copyOf(stagedCars, cap);
+        stagedNS = Arrays.copyOf(stagedNS, cap);
+        vehicleWaitSum = Arrays.copyOf(vehicleWaitSum, cap);
+        departures = Arrays.copyOf(departures, cap);
+        waitHistogram = Arrays.copyOf(waitHistogram, cap * WAIT_BUCKETS);
+    }
+
+    // Allocates the next dense id
+    public synchronized int add(String id, int px, int py) {
+        ensureCapacity(size + 1);
+        int i = size++;
+        ids[i] = id;
+        x[i] = px;
+        y[i] = py;
+        southOf[i] = eastOf[i] = northOf[i] = westOf[i] = -1;
+        clear(i);
+        resetRequested[i] = false;
+        topologyVersion++;
+        return i;
+    }
+
+    // Records that cars leaving i southbound enter south, eastbound enter east (-1 = leave the grid)
+    public synchronized void connect(int i, int south, int east) {
+        southOf[i] = south;
+        eastOf[i] = east;
+        if (south >= 0) northOf[south] = i;
+        if (east >= 0) westOf[east] = i;
+        topologyVersion++;
+    }
+
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    public PheromoneField getPheromoneField() {
+        return pheromones;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    public CityMap getMap() {
+        return map;
+    }
+
+    // Master seed; re-derives every node's arrivals stream
+    public synchronized void setSeed(long master) {
+        seed = master;
+        for (int i = 0; i < size; i++) rngSeed[i] = RandomStreams.seed(master, ids[i], RandomStreams.ARRIVALS);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // Safe from any thread (UI reset): only raises the flag, the owner clears the node when it
+    // next begins a tick (checkAndClearReset), so the seqlock keeps a single writer
+    public void reset(int i) {
+        BOOLS.setRelease(resetRequested, i, true);
+    }
+
+    private void beginWrite(int i) {
+        INTS.setOpaque(version, i, version[i] + 1);
+        VarHandle.storeStoreFence();
+    }
+
+    private void endWrite(int i) {
+        INTS.setRelease(version, i, version[i] + 1);
+    }
+
+    private void clear(int i) {
+        carsNorthSouth[i] = 0;
+        carsEastWest[i] = 0;
+
+        totalCarsPassed[i] = 0;
+        passedNorthSouth[i] = 0;
+        cumulativeQueueSum[i] = 0;
+        ticksCount[i] = 0;
+        totalWaitTime[i] = 0;
+        totalCO2[i] = 0.0;
+
+        greenForNorthSouth[i] = true;
+        currentThreshold[i] = 5;
+
+        transitionTimer[i] = 0;
+        congestionPheromone[i] = 0.0;
+
+        sensorsWorking[i] = true;
+        hasAmbulance[i] = false;
+
+        outTarget[i] = -1;
+        ambulanceTarget[i] = -1;
+        INTS.setVolatile(waveUntil, i, 0);
+
+        clock[i] = 0;
+        for (int a = 2 * i; a < 2 * i + 2; a++) {
+            grownRing[a] = null;
+            ringHead[a] = 0;
+            ringCount[a] = 0;
+            INTS.setVolatile(inbox, a, 0);
+        }
+        stagedCars[i] = 0;
+        vehicleWaitSum[i] = 0;
+        departures[i] = 0;
+        Arrays.fill(waitHistogram, i * WAIT_BUCKETS, (i + 1) * WAIT_BUCKETS, 0);
+
+        rngSeed[i] = RandomStreams.seed(seed, ids[i], RandomStreams.ARRIVALS);
+    }
+
+    // Physics
+    // Streets are one directional N->S and E->W for
+    public void generateTrafficFlow(int i) {
+        beginWrite(i);
+        if (nextInt(i, 100) < map.getHighwayProb()) {
+            int nsBatch = 1 + nextInt(i, 3);
+            INTS.getAndAdd(carsNorthSouth, i, nsBatch);
+            enqueue(2 * i, clock[i], nsBatch);
+        }
+
+        if (nextInt(i, 100) < map.getSideStreetProb()) {
+            int ewBatch = 1 + nextInt(i, 3);
+            INTS.getAndAdd(carsEastWest, i, ewBatch);
+            enqueue(2 * i + 1, clock[i], ewBatch);
+        }
+
+        // Metrics
+        int currentQueue = queueNS(i) + queueEW(i);
+        LONGS.getAndAdd(cumulativeQueueSum, i, (long) currentQueue);
+        LONGS.getAndAdd(ticksCount, i, 1L);
+        totalWaitTime[i] += currentQueue;
+        totalCO2[i] += (currentQueue * 1.0);
+        endWrite(i);
+    }
+
+    // Called by i's owner (its controller, or the engine's admit phase for i)
+    public boolean addCarsNorthSouth(int i, int amount) {
+        if (!admit(carsNorthSouth, i, amount)) return false;
+        enqueue(2 * i, clock[i], amount);
+        return true;
+    }
+
+    public boolean addCarsEastWest(int i, int amount) {
+        if (!admit(carsEastWest, i, amount)) return false;
+        enqueue(2 * i + 1, clock[i], amount);
+        return true;
+    }
+
+    // Called from another thread: the owner stamps the cars when it next steps
+    private boolean addCarsFrom(int i, boolean southBound, int amount) {
+        if (!admit(southBound ? carsNorthSouth : carsEastWest, i, amount)) return false;
+        INTS.getAndAdd(inbox, southBound ? 2 * i : 2 * i + 1, amount);
+        return true;
+    }
+
+    // Reserves room for amount cars against maxCapacity, all or nothing
+    private boolean admit(int[] queue, int i, int amount) {
+        int cur;
+        do {
+            cur = (int) INTS.getVolatile(queue, i);
+            if (cur + amount > maxCapacity) {
+                return false; // Road is full
+            }
+        } while (!INTS.compareAndSet(queue, i, cur, cur + amount));
+        LONGS.getAndAdd(cumulativeQueueSum, i, (long) amount);
+        LONGS.getAndAdd(ticksCount, i, 1L);
+        return true;
+    }
+
+    int queueNS(int i) {
+        return (int) INTS.getVolatile(carsNorthSouth, i);
+    }
+
+    int queueEW(int i) {
+        return (int) INTS.getVolatile(carsEastWest, i);
+    }
+
+    // Ticks stepped by the owner; entry ticks and waits are measured on it
+    public void advanceClock(int i, int ticks) {
+        clock[i] += ticks;
+    }
+
+    public int getClock(int i) {
+        return clock[i];
+    }
+
+    // Departing cars are staged here and leave the ring in settleOutflow
+    public int processFlow(int i) {
+        stampInbox(i);
+        beginWrite(i);
+        if (transitionTimer[i] > 0) {
+            transitionTimer[i]--;
+            endWrite(i);
+            return 0;
+        }
+
+        int moved = 0;
+
+        // Only the owner removes cars, so the queue can only grow between the read and the add
+        if (greenForNorthSouth[i]) {
+            // Normally a 1 vehicle per tick moves in the intersection
+            // If ambulance is present, other cars pull over so the ambulance
+            // can move as fast as possible in the case of emergency
+            int speed = hasAmbulance[i] ? 500 : 1;
+            moved = Math.min(speed, queueNS(i));
+            int left = (int) INTS.getAndAdd(carsNorthSouth, i, -moved) - moved;
+
+            // Ambulance leaves if cleared
+            if (hasAmbulance[i] && left < 2) {
+                hasAmbulance[i] = false;
+            }
+        } else if (queueEW(i) > 0) {
+            INTS.getAndAdd(carsEastWest, i, -1);
+            moved = 1;
+        }
+
+        totalCarsPassed[i] += moved;
+        if (greenForNorthSouth[i]) passedNorthSouth[i] += moved;
+        stagedCars[i] = moved;
+        stagedNS[i] = greenForNorthSouth[i];
+        endWrite(i);
+        return moved;
+    }
+
+    public void switchLight(int i) {
+        beginWrite(i);
+        greenForNorthSouth[i] = !greenForNorthSouth[i];
+
+        if (map.isPenaltyEnabled()) {
+            transitionTimer[i] = 2; // yellow
+            // Penalty for when colour is switched
+            // In VT-Micro Emission Mode more fuel is consumed at Acceleration
+            // than while idle or accelerating
+            totalCO2[i] += (queueNS(i) + queueEW(i)) * 2.0;
+        }
+        endWrite(i);
+    }
+
+    // Stigmergy for a single node; grids update the whole field at once (PheromoneField)
+    public void updatePheromones(int i) {
+        double p = congestionPheromone[i];
+        if (p > 0) p -= 0.5;
+
+        int total = queueNS(i) + queueEW(i);
+
+        if (total > 15) p += 2.0;
+        else if (total > 10) p += 1.0;
+
+        if (p < 0) p = 0;
+        if (p > 10) p = 10;
+        congestionPheromone[i] = p;
+    }
+
+    // Safe from any thread (UI spawn, upstream JADE agent)
+    public void addAmbulance(int i) {
+        BOOLS.setVolatile(hasAmbulance, i, true);
+        INTS.getAndAdd(carsNorthSouth, i, 1);
+        INTS.getAndAdd(inbox, 2 * i, 1);
+    }
+
+    // Engine admit phase, run for i itself
+    private void acceptAmbulance(int i) {
+        BOOLS.setVolatile(hasAmbulance, i, true);
+        INTS.getAndAdd(carsNorthSouth, i, 1);
+        enqueue(2 * i, clock[i], 1);
+    }
+
+    public void toggleSensors(int i) {
+        BOOLS.setVolatile(sensorsWorking, i, !sensorsWorking[i]);
+    }
+
+    // Called by i's owner; applies a pending reset
+    public boolean checkAndClearReset(int i) {
+        if (!BOOLS.compareAndSet(resetRequested, i, true, false)) return false;
+        beginWrite(i);
+        clear(i);
+        endWrite(i);
+        return true;
+    }
+
+    // Consistent copy of one node for readers on other threads (UI, reports)
+    public NodeSnapshot snapshot(int i, NodeSnapshot into) {
+        int v;
+        do {
+            while (((v = (int) INTS.getAcquire(version, i)) & 1) != 0) Thread.onSpinWait();
+            into.queueNS = queueNS(i);
+            into.queueEW = queueEW(i);
+            into.greenNS = greenForNorthSouth[i];
+            into.inTransition = transitionTimer[i] > 0;
+            into.pheromone = congestionPheromone[i];
+            into.totalPassed = totalCarsPassed[i];
+            into.totalWaitTime = totalWaitTime[i];
+            into.totalCO2 = totalCO2[i];
+            into.sensorsWorking = (boolean) BOOLS.getVolatile(sensorsWorking, i);
+            into.hasAmbulance = (boolean) BOOLS.getVolatile(hasAmbulance, i);
+            VarHandle.loadLoadFence();
+        } while (v != (int) INTS.getOpaque(version, i));
+        return into;
+    }
+
+    // Two-phase transfers
+    // Phase 1: a node only posts what leaves it. Phase 2a: every node admits what its
+    // upstream neighbours posted. Phase 2b: every sender takes back what was refused.
+    // Each phase writes only to its own node, so the result does not depend on threads.
+    public void postOutflow(int i, int target, int amount, boolean southBound) {
+        outTarget[i] = target;
+        outAmount[i] = amount;
+        outSouthBound[i] = southBound;
+        outAccepted[i] = false;
+    }
+
+    // The sender's boundary link has already decided whether the neighbour takes the cars
+    public void postRemoteOutflow(int i, int amount, boolean southBound, boolean accepted) {
+        postOutflow(i, REMOTE, amount, southBound);
+        outAccepted[i] = accepted;
+    }
+
+    public void postAmbulance(int i, int target) {
+        ambulanceTarget[i] = target;
+    }
+
+    // Settle phase: a sender announces a platoon reaching target over the next eta ticks.
+    // Both upstream neighbours may post at once; the later end wins whatever the order.
+    public void postGreenWave(int target, int eta) {
+        int until = clock[target] + eta;
+        int cur;
+        do {
+            cur = (int) INTS.getVolatile(waveUntil, target);
+            if (cur >= until) return;
+        } while (!INTS.compareAndSet(waveUntil, target, cur, until));
+    }
+
+    // Decide phase, by i's owner: end of the platoon announced since the last call, 0 if none
+    public int takeGreenWave(int i) {
+        if ((int) INTS.getVolatile(waveUntil, i) == 0) return 0;
+        return (int) INTS.getAndSet(waveUntil, i, 0);
+    }
+
+    public void acceptInbound(int d) {
+        int n = northOf[d];
+        if (n >= 0 && outTarget[n] == d) {
+            outAccepted[n] = outSouthBound[n] ? addCarsNorthSouth(d, outAmount[n]) : addCarsEastWest(d, outAmount[n]);
+        }
+        int w = westOf[d];
+        if (w >= 0 && outTarget[w] == d) {
+            outAccepted[w] = outSouthBound[w] ? addCarsNorthSouth(d, outAmount[w]) : addCarsEastWest(d, outAmount[w]);
+        }
+        if (n >= 0 && ambulanceTarget[n] == d) acceptAmbulance(d);
+    }
+
+    // Returns true if i had an outflow pending; outAccepted[i] tells whether it went through
+    public boolean settleOutflow(int i) {
+        ambulanceTarget[i] = -1;
+        int staged = stagedCars[i];
+        int a = stagedNS[i] ? 2 * i : 2 * i + 1;
+        stagedCars[i] = 0;
+        if (outTarget[i] == -1) {
+            dequeue(i, a, staged, true); // Left the grid or crossed into a road we do not model
+            return false;
+        }
+        if (outAccepted[i]) {
+            dequeue(i, a, staged, true);
+        } else {
+            // Neighbour is full
+            // Put cars back, still at the head of the ring with their entry ticks
+            if (!admit(outSouthBound[i] ? carsNorthSouth : carsEastWest, i, outAmount[i])) {
+                dequeue(i, a, staged, false); // No room either, the cars are lost
+            }
+        }
+        outTarget[i] = -1;
+        return true;
+    }
+
+    // Single-agent path (JADE): delivers i's outflow straight into the neighbour
+    public boolean deliverOutflow(int i) {
+        int t = outTarget[i];
+        if (t >= 0) outAccepted[i] = addCarsFrom(t, outSouthBound[i], outAmount[i]);
+        if (ambulanceTarget[i] >= 0) addAmbulance(ambulanceTarget[i]);
+        return settleOutflow(i);
+    }
+
+    public boolean isOutflowAccepted(int i) {
+        return outAccepted[i];
+    }
+
+    // Per-vehicle rings
+    private int ringCapacity(int a) {
+        int[] ring = grownRing[a];
+        return ring == null ? ringSize : ring.length;
+    }
+
+    private int entryAt(int a, int k) {
+        int[] ring = grownRing[a];
+        if (ring == null) return entryTicks[a * ringSize + ((ringHead[a] + k) & (ringSize - 1))];
+        return ring[(ringHead[a] + k) & (ring.length - 1)];
+    }
+
+    private void enqueue(int a, int tick, int cars) {
+        for (int k = 0; k < cars; k++) {
+            if (ringCount[a] == ringCapacity(a)) grow(a);
+            int[] ring = grownRing[a];
+            if (ring == null) entryTicks[a * ringSize + ((ringHead[a] + ringCount[a]) & (ringSize - 1))] = tick;
+            else ring[(ringHead[a] + ringCount[a]) & (ring.length - 1)] = tick;
+            ringCount[a]++;
+        }
+    }
+
+    // Pops up to cars from the head, recording their waits if they went through the intersection
+    private void dequeue(int i, int a, int cars, boolean departed) {
+        cars = Math.min(cars, ringCount[a]); // An admission still on its way to the inbox has no stamp yet
+        if (departed) {
+            for (int k = 0; k < cars; k++) recordWait(i, clock[i] - entryAt(a, k));
+        }
+        ringHead[a] = (ringHead[a] + cars) & (ringCapacity(a) - 1);
+        ringCount[a] -= cars;
+    }
+
+    // Only on a queue that outgrew its slots; a handful of times per run, never per car
+    private void grow(int a) {
+        int count = ringCount[a];
+        int[] bigger = new int[ringCapacity(a) * 2];
+        for (int k = 0; k < count; k++) bigger[k] = entryAt(a, k);
+        grownRing[a] = bigger;
+        ringHead[a] = 0;
+    }
+
+    private void stampInbox(int i) {
+        for (int a = 2 * i; a < 2 * i + 2; a++) {
+            if ((int) INTS.getVolatile(inbox, a) == 0) continue;
+            enqueue(a, clock[i], (int) INTS.getAndSet(inbox, a, 0));
+        }
+    }
+
+    private void recordWait(int i, int wait) {
+        vehicleWaitSum[i] += wait;
+        departures[i]++;
+        waitHistogram[i * WAIT_BUCKETS + waitBucket(wait)]++;
+    }
+
+    static int waitBucket(int wait) {
+        if (wait < 16) return Math.max(0, wait);
+        int log = 31 - Integer.numberOfLeadingZeros(wait);
+        return Math.min(WAIT_BUCKETS - 1, 16 + (log - 4) * 2 + ((wait >>> (log - 1)) & 1));
+    }
+
+    // Smallest wait that falls in bucket b
+    static int waitBucketFloor(int b) {
+        if (b < 16) return b;
+        int log = 4 + (b - 16) / 2;
+        return (1 << log) + ((b - 16) & 1) * (1 << (log - 1));
+    }
+
+    // Largest wait that falls in bucket b; the last bucket is open-ended and reports its floor
+    static int waitBucketCeiling(int b) {
+        return b < 16 || b == WAIT_BUCKETS - 1 ? waitBucketFloor(b) : waitBucketFloor(b + 1) - 1;
+    }
+
+    // Aggregate sweeps for the scoreboard and reports
+    public long sumCarsPassed() {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += totalCarsPassed[i];
+        return s;
+    }
+
+    public long sumWaitTime() {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += totalWaitTime[i];
+        return s;
+    }
+
+    public long sumQueueSamples() {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += (long) LONGS.getOpaque(cumulativeQueueSum, i);
+        return s;
+    }
+
+    public double sumCO2() {
+        double s = 0;
+        for (int i = 0; i < size; i++) s += totalCO2[i];
+        return s;
+    }
+
+    public long sumVehicleWait() {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += vehicleWaitSum[i];
+        return s;
+    }
+
+    public long sumDepartures() {
+        long s = 0;
+        for (int i = 0; i < size; i++) s += departures[i];
+        return s;
+    }
+
+    // Grid-wide wait percentile (0 < q <= 1) in ticks, at histogram bucket resolution: the upper
+    // bound of the bucket holding it, so exact below 16 ticks and never under-reported above
+    public int waitPercentile(double q) {
+        long[] merged = new long[WAIT_BUCKETS];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            for (int b = 0; b < WAIT_BUCKETS; b++) merged[b] += waitHistogram[i * WAIT_BUCKETS + b];
+        }
+        for (long c : merged) total += c;
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int b = 0; b < WAIT_BUCKETS; b++) {
+            seen += merged[b];
+            if (seen >= rank) return waitBucketCeiling(b);
+        }
+        return waitBucketCeiling(WAIT_BUCKETS - 1);
+    }
+
+    // SplitMix64 step of i's arrivals stream; only the owner draws from it
+    private long next(int i) {
+        long st = rngSeed[i] + RandomStreams.GOLDEN_GAMMA;
+        rngSeed[i] = st;
+        return RandomStreams.mix(st);
+    }
+
+    int nextInt(int i, int bound) {
+        return (int) (((next(i) >>> 33) * bound) >>> 31);
+    }
+
+    public double nextDouble(int i) {
+        return (next(i) >>> 11) * 0x1.0p-53;
+    }
+}
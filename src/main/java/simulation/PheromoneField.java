@@ -0,0 +1,267 @@
+package simulation;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Congestion pheromone of the whole grid as one field, updated by one sweep per tick instead
+// of each agent updating its own node. The sweep is three passes over flat arrays, each of
+// which only writes slot i, so the engine shards them like any other phase:
+//   deposit    evaporate, then deposit by the node's own queues (the old per-node rule)
+//   diffuse    blend each level with the mean of its neighbours' (rate 0 = no diffusion)
+//   pressure   highest level among the neighbours, what an agent reads as its surroundings
+// Neighbours come from a CSR adjacency over the N/S/E/W links, rebuilt when the topology changes.
+// Neighbours kept in another partition are not in the store; their levels arrive over the
+// boundary protocol and only take part in the pressure pass.
+//
+// The event-driven engine sweeps only the part of the field that can change (prepareActive):
+// a node deposits only if it holds a level or its queues may have changed since the last sweep
+// (it was stepped or received cars, see touch); its level can only spread to its neighbours,
+// and only their neighbours' pressure can move. Every other node is at level 0 with no
+// pressure and stays there, so the passes give the same field as a full sweep.
+public class PheromoneField {
+
+    // Directions of remote neighbours
+    public static final int NORTH = 0, SOUTH = 1, WEST = 2, EAST = 3;
+
+    private static final VarHandle DOUBLES = MethodHandles.arrayElementVarHandle(double[].class);
+
+    public static final double MAX_LEVEL = 10.0;
+    private static final double EVAPORATION = 0.5;
+    // Active sweeps cover the whole field once more than 1/8 of it is live
+    private static final int WHOLE_FIELD_SHARE = 8;
+
+    private final NodeStore store;
+    private volatile double diffusion = 0.0;
+
+    private int n = 0;
+    private double[] level = new double[0];   // the store's congestionPheromone
+    private double[] deposited = new double[0];
+    private double[] pressure = new double[0];
+    private int[] adjStart = new int[1];
+    private int[] adj = new int[0];
+    private int builtVersion = -1;
+
+    // Remote levels per node and direction, and their max per node (snapshot taken in prepare).
+    // The boundary thread writes remoteMax slots while a sweep reads them, so slots go through
+    // DOUBLES: release on write, opaque on read, never a torn or cached value
+    private double[] remoteLevel = new double[0];
+    private volatile double[] remoteMax = new double[0];
+    private double[] remote = new double[0];
+
+    // Active sweeps: nodes to deposit next time, and the node lists of the current sweep
+    private int[] live = new int[0];
+    private int liveCount = 0;
+    private boolean sweepAll = true;
+    private int[] depositBuf = new int[0], diffuseBuf = new int[0], pressureBuf = new int[0];
+    private int[] allNodes = new int[0];
+    private int[] depositNodes = depositBuf, diffuseNodes = diffuseBuf, pressureNodes = pressureBuf;
+    private int depositCount = 0, diffuseCount = 0, pressureCount = 0;
+    // Membership stamps per list, so a node is listed once per sweep
+    private int[] liveMark = new int[0], diffuseMark = new int[0], pressureMark = new int[0];
+    private int stamp = 0;
+
+    public final IntConsumer depositPass = this::deposit;
+    public final IntConsumer diffusePass = this::diffuse;
+    public final IntConsumer pressurePass = this::pressure;
+
+    PheromoneField(NodeStore store) {
+        this.store = store;
+    }
+
+    // Share of a node's level exchanged with its neighbours per tick, 0..1
+    public void setDiffusion(double rate) {
+        this.diffusion = Math.max(0.0, Math.min(1.0, rate));
+    }
+
+    public double getDiffusion() {
+        return diffusion;
+    }
+
+    // Before the passes of a tick: picks up new nodes and links
+    public void prepare() {
+        n = store.size();
+        level = store.congestionPheromone;
+        if (deposited.length < n) {
+            deposited = new double[level.length];
+            double[] grown = new double[level.length];
+            System.arraycopy(pressure, 0, grown, 0, pressure.length);
+            pressure = grown;
+        }
+        if (builtVersion != store.getTopologyVersion()) buildAdjacency();
+        remote = remoteMax;
+    }
+
+    public synchronized void setRemoteLevel(int i, int direction, double level) {
+        if (i >= remoteMax.length) {
+            int cap = Math.max(i + 1, store.congestionPheromone.length);
+            remoteLevel = Arrays.copyOf(remoteLevel, 4 * cap);
+            remoteMax = Arrays.copyOf(remoteMax, cap);
+        }
+        remoteLevel[4 * i + direction] = level;
+        double max = 0.0;
+        for (int d = 0; d < 4; d++) max = Math.max(max, remoteLevel[4 * i + d]);
+        DOUBLES.setRelease(remoteMax, i, max);
+    }
+
+    // Queues of i may have changed since the last sweep (stepped, received cars, woken from outside)
+    public void touch(int i) {
+        if (i >= liveMark.length) {
+            sweepAll = true;
+            return;
+        }
+        if (liveMark[i] == stamp + 1) return;
+        liveMark[i] = stamp + 1;
+        live[liveCount++] = i;
+    }
+
+    // Next active sweep covers every node (mode switch, nodes added)
+    public void touchAll() {
+        sweepAll = true;
+    }
+
+    // Before the passes of an active sweep: builds the node lists. Whole-field sweeps when asked,
+    // after a topology change, while remote levels take part (partitioned deployments), and
+    // when so much of the grid is live that the lists would cost more than they save
+    public void prepareActive() {
+        boolean rebuilt = builtVersion != store.getTopologyVersion();
+        prepare();
+        stamp++;
+        if (depositBuf.length < n) {
+            int cap = level.length;
+            depositBuf = new int[cap];
+            diffuseBuf = new int[cap];
+            pressureBuf = new int[cap];
+            live = Arrays.copyOf(live, cap);
+            liveMark = Arrays.copyOf(liveMark, cap);
+            diffuseMark = Arrays.copyOf(diffuseMark, cap);
+            pressureMark = Arrays.copyOf(pressureMark, cap);
+        }
+        if (sweepAll || rebuilt || remote.length > 0 || liveCount > n / WHOLE_FIELD_SHARE) {
+            sweepAll = false;
+            if (allNodes.length != n) {
+                allNodes = new int[n];
+                for (int i = 0; i < n; i++) allNodes[i] = i;
+            }
+            depositNodes = diffuseNodes = pressureNodes = allNodes;
+            depositCount = diffuseCount = pressureCount = n;
+            return;
+        }
+
+        depositNodes = depositBuf;
+        diffuseNodes = diffuseBuf;
+        pressureNodes = pressureBuf;
+        System.arraycopy(live, 0, depositNodes, 0, liveCount);
+        depositCount = liveCount;
+        diffuseCount = 0;
+        for (int k = 0; k < depositCount; k++) {
+            int i = depositNodes[k];
+            if (mark(diffuseMark, i)) diffuseNodes[diffuseCount++] = i;
+            if (diffusion == 0.0) continue;
+            for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                if (mark(diffuseMark, adj[a])) diffuseNodes[diffuseCount++] = adj[a];
+            }
+        }
+        pressureCount = 0;
+        for (int k = 0; k < diffuseCount; k++) {
+            int i = diffuseNodes[k];
+            if (mark(pressureMark, i)) pressureNodes[pressureCount++] = i;
+            for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                if (mark(pressureMark, adj[a])) pressureNodes[pressureCount++] = adj[a];
+            }
+        }
+    }
+
+    private boolean mark(int[] marks, int i) {
+        if (marks[i] == stamp) return false;
+        marks[i] = stamp;
+        return true;
+    }
+
+    // After the passes of an active sweep: nodes left holding a level deposit again next time
+    public void finishActive() {
+        // Nodes outside the next deposit list must read as 0 to their neighbours' diffusion
+        if (depositNodes == allNodes) Arrays.fill(deposited, 0, n, 0.0);
+        else for (int k = 0; k < depositCount; k++) deposited[depositNodes[k]] = 0.0;
+        liveCount = 0;
+        for (int k = 0; k < diffuseCount; k++) {
+            int i = diffuseNodes[k];
+            if (level[i] > 0) touch(i);
+        }
+    }
+
+    public int[] getDepositNodes() { return depositNodes; }
+    public int getDepositCount() { return depositCount; }
+    public int[] getDiffuseNodes() { return diffuseNodes; }
+    public int getDiffuseCount() { return diffuseCount; }
+
+    // Every node whose level or pressure may be non-zero after the sweep
+    public int[] getPressureNodes() { return pressureNodes; }
+    public int getPressureCount() { return pressureCount; }
+
+    private void buildAdjacency() {
+        builtVersion = store.getTopologyVersion();
+        int[] start = new int[n + 1];
+        int[] list = new int[4 * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            start[i] = k;
+            if (store.northOf[i] >= 0) list[k++] = store.northOf[i];
+            if (store.southOf[i] >= 0) list[k++] = store.southOf[i];
+            if (store.westOf[i] >= 0) list[k++] = store.westOf[i];
+            if (store.eastOf[i] >= 0) list[k++] = store.eastOf[i];
+        }
+        start[n] = k;
+        adjStart = start;
+        adj = list;
+    }
+
+    private void deposit(int i) {
+        double p = level[i];
+        if (p > 0) p -= EVAPORATION;
+
+        int total = store.queueNS(i) + store.queueEW(i);
+
+        if (total > 15) p += 2.0;
+        else if (total > 10) p += 1.0;
+
+        deposited[i] = Math.max(0.0, Math.min(MAX_LEVEL, p));
+    }
+
+    private void diffuse(int i) {
+        double d = diffusion;
+        int from = adjStart[i], to = adjStart[i + 1];
+        if (d == 0.0 || from == to) {
+            level[i] = deposited[i];
+            return;
+        }
+        double sum = 0;
+        for (int k = from; k < to; k++) sum += deposited[adj[k]];
+        level[i] = (1.0 - d) * deposited[i] + d * sum / (to - from);
+    }
+
+    private void pressure(int i) {
+        double max = i < remote.length ? (double) DOUBLES.getOpaque(remote, i) : 0.0;
+        for (int k = adjStart[i]; k < adjStart[i + 1]; k++) max = Math.max(max, level[adj[k]]);
+        pressure[i] = max;
+    }
+
+    // All three passes on the calling thread (the JADE deployment runs this once per second)
+    public void sweep() {
+        prepare();
+        for (int i = 0; i < n; i++) deposit(i);
+        for (int i = 0; i < n; i++) diffuse(i);
+        for (int i = 0; i < n; i++) pressure(i);
+    }
+
+    public int size() {
+        return n;
+    }
+
+    // Highest pheromone level among i's neighbours as of the last sweep
+    public double getPressure(int i) {
+        double[] p = pressure;
+        return i < p.length ? p[i] : 0.0;
+    }
+}
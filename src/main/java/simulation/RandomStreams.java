@@ -0,0 +1,36 @@
+package simulation;
+
+// Independent random streams derived from one master seed, one per (node, purpose).
+// Streams are keyed by node name rather than dense id, so a node draws the same numbers
+// whatever order the nodes were created in and whichever thread steps it.
+// Generators are SplitMix64: one long of state per stream, never shared, no locks.
+public final class RandomStreams {
+
+    public static final long DEFAULT_SEED = 42;
+
+    // Purposes
+    public static final int ARRIVALS = 1;
+    public static final int EXPLORATION = 2;
+    public static final int REPLAY = 3;
+
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private RandomStreams() {}
+
+    public static long seed(long master, String key, int purpose) {
+        // FNV-1a over the key, then SplitMix64 finalizers to decorrelate neighbouring names
+        long h = 0xCBF29CE484222325L;
+        for (int k = 0; k < key.length(); k++) {
+            h ^= key.charAt(k);
+            h *= 0x100000001B3L;
+        }
+        return mix(mix(master ^ h) + GOLDEN_GAMMA * purpose);
+    }
+
+    // SplitMix64 output function
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
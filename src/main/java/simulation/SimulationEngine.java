@@ -0,0 +1,334 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+// Headless lock-step driver: every registered controller advances one simulated
+// second per step, without waiting on a wall clock.
+//
+// A step runs in phases, each finished for every node before the next starts:
+// pheromone sweep, physics (outflows posted), admit inbound, settle refused outflow, decide.
+// Inside a phase a node only writes its own slot, so the grid can be split into
+// shards on a fork-join pool and the result is the same for any thread count. The one
+// exception is Q-tables shared between agents (--share-q), which take concurrent updates.
+//
+// In event-driven mode only nodes with something to do are stepped: each node reports
+// its next wake-up tick, and nodes receiving cars or sitting in a non-zero pheromone field
+// are woken by the engine. A node that slept is caught up before its next step. A sleeping
+// node that receives cars is stepped for the whole tick, as a dense step would, so both
+// modes give the same results.
+// The pheromone sweep then only covers the nodes stepped or woken last tick, the ones
+// holding a level and their neighbours, so a quiet grid costs about its active set.
+public class SimulationEngine {
+
+    public static final double SECONDS_PER_TICK = 1.0;
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private final NodeStore store;
+    private final CityMap map;
+    private final PheromoneField pheromones;
+    private NodeController[] byNode = new NodeController[0];
+    private long tick = 0;
+
+    private ForkJoinPool pool = null;
+    private int shardCount = 1;
+
+    private final IntConsumer beginPhase, physicsPhase, admitPhase, settlePhase, decidePhase;
+
+    // Event-driven mode
+    private EventScheduler scheduler = null;
+    private int[] active = new int[0];
+    private int[] woken = new int[0];
+    // Last tick each node's clock was brought up to
+    private long[] lastStepped = new long[0];
+    private long nodeSteps = 0;
+
+    // Green-wave offset planning, between ticks on the stepping thread
+    private GreenWavePlanner planner = null;
+    private GreenWavePlanner.Listener plannerListener = null;
+    private int planPeriod = 0;
+
+    public SimulationEngine(NodeStore store) {
+        this.store = store;
+        this.map = store.getMap();
+        this.pheromones = store.getPheromoneField();
+        beginPhase = i -> { if (byNode[i] != null) byNode[i].beginTick(); };
+        physicsPhase = i -> { if (byNode[i] != null) byNode[i].physics(); };
+        admitPhase = store::acceptInbound;
+        settlePhase = i -> {
+            if (store.settleOutflow(i) && byNode[i] != null) byNode[i].afterTransfer(store.isOutflowAccepted(i));
+        };
+        decidePhase = i -> { if (byNode[i] != null) byNode[i].decide(); };
+    }
+
+    public void register(NodeController controller) {
+        int id = controller.nodeId();
+        if (id >= byNode.length) byNode = Arrays.copyOf(byNode, Math.max(id + 1, byNode.length * 2));
+        byNode[id] = controller;
+    }
+
+    public NodeController getController(int nodeId) {
+        return nodeId < byNode.length ? byNode[nodeId] : null;
+    }
+
+    // 1 = sequential. The grid is cut into contiguous id ranges (row bands for row-major grids).
+    public void setParallelism(int threads) {
+        if (pool != null) pool.shutdown();
+        if (threads <= 1) {
+            pool = null;
+            shardCount = 1;
+        } else {
+            pool = new ForkJoinPool(threads);
+            shardCount = threads * SHARDS_PER_THREAD;
+        }
+    }
+
+    public void shutdown() {
+        setParallelism(1);
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public double getSimulatedSeconds() {
+        return tick * SECONDS_PER_TICK;
+    }
+
+    // Steps only nodes that are due; every node is due on the first event-driven tick
+    public void setEventDriven(boolean on) {
+        if (!on) {
+            scheduler = null;
+            return;
+        }
+        int n = Math.min(store.size(), byNode.length);
+        scheduler = new EventScheduler(n);
+        active = new int[n];
+        woken = new int[n];
+        lastStepped = new long[n];
+        pheromones.touchAll();
+        for (int i = 0; i < n; i++) {
+            scheduler.schedule(i, tick);
+            lastStepped[i] = tick - 1;
+        }
+    }
+
+    // Replans every period ticks while running; the listener delivers the changed schedules
+    public void setPlanner(GreenWavePlanner planner, int period, GreenWavePlanner.Listener listener) {
+        this.planner = planner;
+        this.planPeriod = Math.max(1, period);
+        this.plannerListener = listener;
+    }
+
+    public boolean isEventDriven() {
+        return scheduler != null;
+    }
+
+    // Total node-steps executed; grid size x ticks when not event-driven
+    public long getNodeSteps() {
+        return nodeSteps;
+    }
+
+    // Forces a node to be stepped on the next tick (external events in event-driven mode)
+    public void wake(int nodeId) {
+        if (scheduler == null) return;
+        scheduler.schedule(nodeId, tick);
+        pheromones.touch(nodeId);
+    }
+
+    public void step() {
+        if (planner != null && map.isSimulationRunning() && tick % planPeriod == 0) planner.plan(tick, plannerListener);
+        if (scheduler != null && map.isSimulationRunning()) {
+            stepEvents();
+        } else {
+            int n = Math.min(store.size(), byNode.length);
+            runPhase(beginPhase, n);
+            if (map.isSimulationRunning()) {
+                sweepPheromones();
+                runPhase(physicsPhase, n);
+                runPhase(admitPhase, n);
+                runPhase(settlePhase, n);
+                runPhase(decidePhase, n);
+                nodeSteps += n;
+            }
+        }
+        tick++;
+    }
+
+    private void stepEvents() {
+        // The field covers sleeping nodes too; wherever it is non-zero someone has to look at it
+        sweepActivePheromones();
+
+        int count = scheduler.drain(tick, active);
+        if (count == 0) return;
+        for (int k = 0; k < count; k++) {
+            int i = active[k];
+            long skipped = tick - lastStepped[i] - 1;
+            if (skipped > 0 && byNode[i] != null) byNode[i].catchUp(skipped);
+            lastStepped[i] = tick;
+        }
+
+        runPhase(beginPhase, active, count);
+        runPhase(physicsPhase, active, count);
+
+        // Receivers of this tick's outflow were asleep and idle, so their physics only moves
+        // their clock; from admission on they are stepped with the rest and react this tick
+        int wokenCount = 0;
+        for (int k = 0; k < count; k++) {
+            int i = active[k];
+            wokenCount = addSleepingReceiver(store.outTarget[i], wokenCount);
+            wokenCount = addSleepingReceiver(store.ambulanceTarget[i], wokenCount);
+        }
+        if (wokenCount > 0) {
+            runPhase(beginPhase, woken, wokenCount);
+            runPhase(physicsPhase, woken, wokenCount);
+            System.arraycopy(woken, 0, active, count, wokenCount);
+            count += wokenCount;
+        }
+
+        runPhase(admitPhase, active, count);
+        runPhase(settlePhase, active, count);
+        runPhase(decidePhase, active, count);
+        nodeSteps += count;
+
+        for (int k = 0; k < count; k++) {
+            int i = active[k];
+            if (byNode[i] != null) scheduler.schedule(i, byNode[i].nextWakeTick(tick));
+            pheromones.touch(i);
+        }
+    }
+
+    // A sleeping receiver is caught up to the start of this tick, which it then steps
+    private int addSleepingReceiver(int node, int wokenCount) {
+        if (node < 0 || lastStepped[node] == tick) return wokenCount;
+        long skipped = tick - lastStepped[node] - 1;
+        if (skipped > 0 && byNode[node] != null) byNode[node].catchUp(skipped);
+        lastStepped[node] = tick;
+        woken[wokenCount] = node;
+        return wokenCount + 1;
+    }
+
+    private void sweepPheromones() {
+        pheromones.prepare();
+        int n = pheromones.size();
+        runPhase(pheromones.depositPass, n);
+        runPhase(pheromones.diffusePass, n);
+        runPhase(pheromones.pressurePass, n);
+    }
+
+    private void sweepActivePheromones() {
+        pheromones.prepareActive();
+        runPhase(pheromones.depositPass, pheromones.getDepositNodes(), pheromones.getDepositCount());
+        runPhase(pheromones.diffusePass, pheromones.getDiffuseNodes(), pheromones.getDiffuseCount());
+        runPhase(pheromones.pressurePass, pheromones.getPressureNodes(), pheromones.getPressureCount());
+        pheromones.finishActive();
+
+        int[] swept = pheromones.getPressureNodes();
+        for (int k = 0; k < pheromones.getPressureCount(); k++) {
+            int i = swept[k];
+            if (store.congestionPheromone[i] > 0 || pheromones.getPressure(i) > 0) scheduler.schedule(i, tick);
+        }
+    }
+
+    private void runPhase(IntConsumer phase, int n) {
+        if (pool == null || n < shardCount) {
+            for (int i = 0; i < n; i++) phase.accept(i);
+        } else {
+            pool.invoke(new ShardTask(phase, null, n, 0, shardCount));
+        }
+    }
+
+    private void runPhase(IntConsumer phase, int[] nodes, int count) {
+        if (pool == null || count < shardCount) {
+            for (int k = 0; k < count; k++) phase.accept(nodes[k]);
+        } else {
+            pool.invoke(new ShardTask(phase, nodes, count, 0, shardCount));
+        }
+    }
+
+    // Runs as fast as the CPU allows
+    public RunStats run(long ticks) {
+        long start = System.nanoTime();
+        for (long i = 0; i < ticks; i++) step();
+        return new RunStats(ticks, System.nanoTime() - start);
+    }
+
+    // Runs at a fixed wall-clock period per tick (1000 ms reproduces the JADE ticker)
+    public RunStats runPaced(long ticks, long periodMillis) throws InterruptedException {
+        long start = System.nanoTime();
+        long next = start;
+        for (long i = 0; i < ticks && !Thread.currentThread().isInterrupted(); i++) {
+            step();
+            next += periodMillis * 1_000_000L;
+            long sleep = (next - System.nanoTime()) / 1_000_000L;
+            if (sleep > 0) Thread.sleep(sleep);
+        }
+        return new RunStats(ticks, System.nanoTime() - start);
+    }
+
+    // Stops the simulation, gives controllers one last tick, then ends the run for each of them
+    // on this thread, so reports come out whole and in node order
+    public void finish(boolean printTables) {
+        map.setSimulationRunning(false);
+        step();
+        int n = Math.min(store.size(), byNode.length);
+        for (int i = 0; i < n; i++) {
+            if (byNode[i] != null) byNode[i].endRun(printTables);
+        }
+    }
+
+    private class ShardTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final IntConsumer phase;
+        private final int[] nodes;
+        private final int n, fromShard, toShard;
+
+        // nodes == null: shard the ids 0..n-1, otherwise the first n entries of nodes
+        ShardTask(IntConsumer phase, int[] nodes, int n, int fromShard, int toShard) {
+            this.phase = phase;
+            this.nodes = nodes;
+            this.n = n;
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+        }
+
+        @Override
+        protected void compute() {
+            if (toShard - fromShard > 1) {
+                int mid = (fromShard + toShard) >>> 1;
+                invokeAll(new ShardTask(phase, nodes, n, fromShard, mid), new ShardTask(phase, nodes, n, mid, toShard));
+                return;
+            }
+            int from = (int) ((long) n * fromShard / shardCount);
+            int to = (int) ((long) n * toShard / shardCount);
+            if (nodes == null) {
+                for (int i = from; i < to; i++) phase.accept(i);
+            } else {
+                for (int k = from; k < to; k++) phase.accept(nodes[k]);
+            }
+        }
+    }
+
+    public static class RunStats {
+        public final long ticks;
+        public final long wallNanos;
+
+        public RunStats(long ticks, long wallNanos) {
+            this.ticks = ticks;
+            this.wallNanos = wallNanos;
+        }
+
+        public double simSecondsPerWallSecond() {
+            return wallNanos == 0 ? 0.0 : (ticks * SECONDS_PER_TICK) / (wallNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ticks in %.3fs wall -> %.1f sim-s/wall-s",
+                    ticks, wallNanos / 1e9, simSecondsPerWallSecond());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package simulation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Wall-clock cost of each startup phase (container boot, agent creation, first tick)
+public class StartupReport {
+
+    private final long origin = System.nanoTime();
+    private long last = origin;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final AtomicInteger pendingFirstTicks = new AtomicInteger();
+
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.put(phase, now - last);
+        last = now;
+    }
+
+    // The "first tick" phase ends when this many agents have ticked once
+    public void expectFirstTicks(int agents) {
+        pendingFirstTicks.set(agents);
+    }
+
+    public void firstTickDone() {
+        if (pendingFirstTicks.decrementAndGet() == 0) {
+            mark("first tick");
+            print();
+        }
+    }
+
+    public synchronized void print() {
+        System.out.println("STARTUP REPORT");
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            System.out.printf("  %-16s %9.1f ms%n", e.getKey(), e.getValue() / 1e6);
+        }
+        System.out.printf("  %-16s %9.1f ms%n", "total", (last - origin) / 1e6);
+    }
+}
@@ -1,251 +1,211 @@
 package simulation;
 
-import java.util.Random;
-
+// View over one intersection slot in the NodeStore
 public class TrafficNode {
 
-    private String id;
-    private int x, y;
-
-    private int carsNorthSouth = 0;
-    private int carsEastWest = 0;
-    private boolean greenForNorthSouth = true;
-
-    private int currentThreshold = 5;
-    private boolean resetRequested = false;
-    private int transitionTimer = 0;
-    private double congestionPheromone = 0.0;
+    private final NodeStore store;
+    private final int index;
 
-    // Metrics
-    private int totalCarsPassed = 0;
-    private long cumulativeQueueSum = 0;
-    private long ticksCount = 0;
-    private long totalWaitTime = 0;
-    private double totalCO2 = 0.0;
+    TrafficNode(NodeStore store, int index) {
+        this.store = store;
+        this.index = index;
+    }
 
-    // Event Flags
-    private boolean sensorsWorking = true;
-    private boolean hasAmbulance = false;
+    public CityMap getMap() {
+        return store.getMap();
+    }
 
-    private Random random = new Random(42);
+    // Cars one approach can hold
+    public int getMaxCapacity() {
+        return store.getMaxCapacity();
+    }
 
-    public TrafficNode(String id, int x, int y) {
-        this.id = id;
-        this.x = x;
-        this.y = y;
+    // Dense id of this intersection in its store
+    public int getIndex() {
+        return index;
     }
 
     public void reset() {
-        carsNorthSouth = 0;
-        carsEastWest = 0;
-
-        totalCarsPassed = 0;
-        cumulativeQueueSum = 0;
-        ticksCount = 0;
-        totalWaitTime = 0;
-        totalCO2 = 0.0;
-
-        greenForNorthSouth = true;
-        currentThreshold = 5;
-
-        resetRequested = true;
-        transitionTimer = 0;
-        congestionPheromone = 0.0;
-
-        sensorsWorking = true;
-        hasAmbulance = false;
-
-        random = new Random(42);
+        store.reset(index);
     }
 
     // Physics
-    // Streets are one directional N->S and E->W for
     public void generateTrafficFlow() {
-        if (random.nextInt(100) < CityMap.getInstance().getHighwayProb()){
-            int nsBatch = 1 + random.nextInt(3);
-            carsNorthSouth += nsBatch;
-        }
-
-        if (random.nextInt(100) < CityMap.getInstance().getSideStreetProb()) {
-            int ewBatch = 1 + random.nextInt(3);
-            carsEastWest += ewBatch;
-        }
-
-        // Metrics
-        cumulativeQueueSum += (carsNorthSouth + carsEastWest);
-        ticksCount++;
-        int currentQueue = carsNorthSouth + carsEastWest;
-        totalWaitTime += currentQueue;
-        totalCO2 += (currentQueue * 1.0);
+        store.generateTrafficFlow(index);
     }
-    private int maxCapacity = 20; // Max cars allowed on a road segment
 
     public boolean addCarsNorthSouth(int amount) {
-        if (carsNorthSouth + amount > maxCapacity) {
-            return false; // Road is full
-        }
-        this.carsNorthSouth += amount;
-        cumulativeQueueSum += amount;
-        ticksCount++;
-        return true;
+        return store.addCarsNorthSouth(index, amount);
     }
 
     public boolean addCarsEastWest(int amount) {
-        if (carsEastWest + amount > maxCapacity) {
-            return false; // Road is full
-        }
-        carsEastWest += amount;
-        cumulativeQueueSum += amount;
-        ticksCount++;
-        return true;
+        return store.addCarsEastWest(index, amount);
     }
 
     public int processFlow() {
+        return store.processFlow(index);
+    }
 
-        if (transitionTimer > 0) {
-            transitionTimer--;
-            return 0;
-        }
-
-        int moved = 0;
+    public void advanceClock(int ticks) {
+        store.advanceClock(index, ticks);
+    }
 
-        if (greenForNorthSouth) {
+    public int getClock() {
+        return store.getClock(index);
+    }
 
-            // Normally a 1 vehicle per tick moves in the intersection
-            // If ambulance is present, other cars pull over so the ambulance
-            // can move as fast as possible in the case of emergency
-            int speed = hasAmbulance ? 500 : 1;
+    // Uniform [0, 1) from this node's arrivals stream
+    public double nextArrivalDouble() {
+        return store.nextDouble(index);
+    }
 
-            for (int i = 0; i < speed; i++) {
-                if (carsNorthSouth > 0) {
-                    carsNorthSouth--;
-                    moved++;
-                }
-            }
+    // Two-phase transfers, see NodeStore
+    public void postOutflow(TrafficNode target, int amount, boolean southBound) {
+        store.postOutflow(index, target.index, amount, southBound);
+    }
 
-            // Ambulance leaves if cleared
-            if (hasAmbulance && carsNorthSouth < 2) {
-                hasAmbulance = false;
-            }
-        }
+    // Downstream neighbours as linked in the store; null at the grid edge, in another
+    // partition, or while the neighbour has not been created yet
+    public TrafficNode getSouth() {
+        int id = store.southOf[index];
+        return id < 0 ? null : store.getMap().getIntersection(id);
+    }
 
-        else {
-            if (carsEastWest > 0) {
-                carsEastWest--;
-                moved++;
-            }
-        }
+    public TrafficNode getEast() {
+        int id = store.eastOf[index];
+        return id < 0 ? null : store.getMap().getIntersection(id);
+    }
 
-        totalCarsPassed += moved;
-        return moved;
+    public void postRemoteOutflow(int amount, boolean southBound, boolean accepted) {
+        store.postRemoteOutflow(index, amount, southBound, accepted);
     }
 
-    public void switchLight() {
-        greenForNorthSouth = !greenForNorthSouth;
+    public void postAmbulance(TrafficNode target) {
+        store.postAmbulance(index, target.index);
+    }
 
-        if (CityMap.getInstance().isPenaltyEnabled()) {
-            transitionTimer = 2; // yellow
-            // Penalty for when colour is switched
-            // In VT-Micro Emission Mode more fuel is consumed at Acceleration
-            // than while idle or accelerating
-            totalCO2 += (carsNorthSouth + carsEastWest) * 2.0;
-        }
+    public int takeGreenWave() {
+        return store.takeGreenWave(index);
     }
 
-    // Stigmergy
-    public void updatePheromones() {
-        if (congestionPheromone > 0) congestionPheromone -= 0.5;
+    public boolean deliverOutflow() {
+        return store.deliverOutflow(index);
+    }
 
-        int total = carsNorthSouth + carsEastWest;
+    public boolean isOutflowAccepted() {
+        return store.isOutflowAccepted(index);
+    }
 
-        if (total > 15) congestionPheromone += 2.0;
-        else if (total > 10) congestionPheromone += 1.0;
+    public void switchLight() {
+        store.switchLight(index);
+    }
 
-        if (congestionPheromone < 0) congestionPheromone = 0;
-        if (congestionPheromone > 10) congestionPheromone = 10;
+    // Stigmergy
+    public void updatePheromones() {
+        store.updatePheromones(index);
     }
 
     // God Mode (for UI purposes)
-    public int getRealQueueNS() { return carsNorthSouth; }
-    public int getRealQueueEW() { return carsEastWest; }
+    public int getRealQueueNS() { return store.queueNS(index); }
+    public int getRealQueueEW() { return store.queueEW(index); }
+
+    public NodeSnapshot snapshot(NodeSnapshot into) {
+        return store.snapshot(index, into);
+    }
 
     // Events
-    public void toggleSensors() { sensorsWorking = !sensorsWorking; }
+    public void toggleSensors() { store.toggleSensors(index); }
 
     public void addAmbulance() {
-        hasAmbulance = true;
-        carsNorthSouth++;
+        store.addAmbulance(index);
     }
 
     public boolean checkAndClearReset() {
-        if (resetRequested) {
-            resetRequested = false;
-            return true;
-        }
-        return false;
+        return store.checkAndClearReset(index);
     }
 
     public String getId() {
-        return id;
+        return store.ids[index];
     }
     public int getX() {
-        return x;
+        return store.x[index];
     }
     public int getY() {
-        return y;
+        return store.y[index];
     }
 
     public int getQueueNS() {
-        return sensorsWorking ? carsNorthSouth : -1;
+        return store.sensorsWorking[index] ? store.queueNS(index) : -1;
     }
     public int getQueueEW() {
-        return sensorsWorking ? carsEastWest : -1;
+        return store.sensorsWorking[index] ? store.queueEW(index) : -1;
     }
 
     public boolean areSensorsWorking() {
-        return sensorsWorking;
+        return store.sensorsWorking[index];
     }
 
     public boolean hasAmbulance() {
-        return sensorsWorking && hasAmbulance;
+        return store.sensorsWorking[index] && store.hasAmbulance[index];
     }
 
     public boolean isNsGreen() {
-        return greenForNorthSouth;
+        return store.greenForNorthSouth[index];
     }
 
     public int getTotalPassed() {
-        return totalCarsPassed;
+        return store.totalCarsPassed[index];
     }
 
     public double getAverageQueue() {
-        return (ticksCount == 0) ? 0.0 : (double) cumulativeQueueSum / ticksCount;
+        long ticks = store.ticksCount[index];
+        return (ticks == 0) ? 0.0 : (double) store.cumulativeQueueSum[index] / ticks;
     }
 
+    // Exact mean over the cars that have left this intersection
     public double getAvgWaitTime() {
-        return (totalCarsPassed == 0) ? 0.0 : (double) totalWaitTime / totalCarsPassed;
+        long departed = store.departures[index];
+        return (departed == 0) ? 0.0 : (double) store.vehicleWaitSum[index] / departed;
+    }
+
+    public long getVehicleWaitTotal() {
+        return store.vehicleWaitSum[index];
+    }
+
+    public long getDepartures() {
+        return store.departures[index];
     }
 
     public double getTotalCO2() {
-        return totalCO2; }
+        return store.totalCO2[index]; }
 
 
     public void setThreshold(int t) {
-        currentThreshold = t;
+        store.currentThreshold[index] = t;
     }
     public int getThreshold() {
-        return currentThreshold;
+        return store.currentThreshold[index];
     }
 
     public double getPheromoneLevel() {
-        return congestionPheromone;
+        return store.congestionPheromone[index];
+    }
+
+    // Highest pheromone level among the neighbouring intersections
+    public double getNeighborPheromone() {
+        return store.getPheromoneField().getPressure(index);
+    }
+
+    // Level of a neighbour in another partition (PheromoneField direction), as last reported
+    public void setRemotePheromone(int direction, double level) {
+        store.getPheromoneField().setRemoteLevel(index, direction, level);
     }
 
     public boolean isInTransition() {
-        return transitionTimer > 0;
+        return store.transitionTimer[index] > 0;
     }
 
     public long getTotalWaitTimeRaw() {
-        return this.totalWaitTime;
+        return store.totalWaitTime[index];
     }
 }
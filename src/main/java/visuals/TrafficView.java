@@ -17,23 +17,25 @@ import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 import javafx.stage.Stage;
 
+import org.traffic.HeadlessSimulation;
 import simulation.CityMap;
+import simulation.GridLayout;
+import simulation.NodeSnapshot;
+import simulation.NodeStore;
+import simulation.SimulationEngine;
 import simulation.TrafficNode;
 
-import jade.core.Profile;
-import jade.core.ProfileImpl;
-import jade.core.Runtime;
-import jade.wrapper.AgentContainer;
-import jade.wrapper.AgentController;
+import agents.GridDeployer;
+import agents.PolicyStore;
+import agents.QTableRegistry;
 
 public class TrafficView extends Application {
 
     private static final int WIDTH = 900;
     private static final int HEIGHT = 780;
 
-    private static final int GRID_SIZE = 3;
-    private static final int SPACING = 200;
-    private static final int OFFSET = 150;
+    // Grid size from --rows / --cols / --grid-config
+    private GridLayout layout;
 
     private static final int ROAD_W = 60;
     private static final int CAR_SIZE = 14;
@@ -47,10 +49,14 @@ public class TrafficView extends Application {
     private double lastSnapshotTime = 0;
     private long lastTotalWait = 0;
     private int lastTotalPassed = 0;
+    private long lastTotalDeparted = 0;
+    private int p95Wait = 0;
 
     // LIVE METRIC
     private double liveAvgWait = 0.0;
 
+    private final NodeSnapshot drawSnapshot = new NodeSnapshot();
+
     // --- CLASS FIELDS (Accessible everywhere) ---
     private TextField tfHighProb;
     private TextField tfSideProb;
@@ -63,6 +69,23 @@ public class TrafficView extends Application {
     @Override
     public void start(Stage primaryStage) {
 
+        try {
+            layout = GridLayout.fromArgs(getParameters().getRaw().toArray(new String[0]));
+        } catch (Exception ex) {
+            System.out.println("Invalid grid config, using 3x3: " + ex.getMessage());
+            layout = new GridLayout(GridLayout.DEFAULT_SIZE, GridLayout.DEFAULT_SIZE);
+        }
+        try {
+            PolicyStore.getInstance().configure(getParameters().getRaw().toArray(new String[0]));
+        } catch (Exception ex) {
+            System.out.println("Could not load Q-table checkpoint, starting cold: " + ex.getMessage());
+        }
+        try {
+            QTableRegistry.getInstance().configure(getParameters().getRaw().toArray(new String[0]));
+        } catch (Exception ex) {
+            System.out.println("Invalid learning options, using defaults: " + ex.getMessage());
+        }
+
         BorderPane root = new BorderPane();
         Canvas canvas = new Canvas(WIDTH, HEIGHT - 100);
         root.setCenter(canvas);
@@ -244,6 +267,8 @@ public class TrafficView extends Application {
             lastSnapshotTime = 0;
             lastTotalWait = 0;
             lastTotalPassed = 0;
+            lastTotalDeparted = 0;
+            p95Wait = 0;
             liveAvgWait = 0.0;
             lblTimer.setText("0.0s");
         });
@@ -253,7 +278,9 @@ public class TrafficView extends Application {
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        startJade();
+        // --engine drives the agents' logic from the headless engine instead of JADE
+        if (getParameters().getRaw().contains("--engine")) startEngine();
+        else startJade();
 
         new AnimationTimer() {
             @Override
@@ -264,12 +291,9 @@ public class TrafficView extends Application {
                     currentTime += 0.016;
 
                     // METRICS & CSV
-                    int currentTotalPassed = 0;
-                    double totalCO2 = 0;
-                    for (TrafficNode n : CityMap.getInstance().getAllIntersections().values()) {
-                        currentTotalPassed += n.getTotalPassed();
-                        totalCO2 += n.getTotalCO2();
-                    }
+                    NodeStore store = CityMap.getInstance().getStore();
+                    long currentTotalPassed = store.sumCarsPassed();
+                    double totalCO2 = store.sumCO2();
 
                     if (currentTime % 1.0 < 0.02) {
                         CityMap.getInstance().logToCSV(currentTime, liveAvgWait, currentTotalPassed, totalCO2);
@@ -278,11 +302,13 @@ public class TrafficView extends Application {
                     // TRIGGERS
                     if (!eventsTriggered && currentTime >= maxTime / 2.0) {
                         eventsTriggered = true;
-                        if (rbFailCorner.isSelected()) CityMap.getInstance().toggleSensorFailure("Node_0_0");
-                        else if (rbFailCenter.isSelected()) CityMap.getInstance().toggleSensorFailure("Node_1_1");
+                        int midRow = layout.getRows() / 2;
+                        int midCol = layout.getCols() / 2;
+                        if (rbFailCorner.isSelected()) CityMap.getInstance().toggleSensorFailure(GridLayout.nodeName(0, 0));
+                        else if (rbFailCenter.isSelected()) CityMap.getInstance().toggleSensorFailure(GridLayout.nodeName(midRow, midCol));
                         else if (rbAmb.isSelected()) {
                             CityMap.getInstance().startAmbulanceTimer();
-                            CityMap.getInstance().spawnAmbulance("Node_0_1");
+                            CityMap.getInstance().spawnAmbulance(GridLayout.nodeName(0, midCol));
                         }
                     }
 
@@ -314,8 +340,8 @@ public class TrafficView extends Application {
         gc.setFill(Color.web("#444444"));
 
         // Horizontal
-        for (int i = 0; i < GRID_SIZE; i++) {
-            double y = OFFSET + (i * SPACING);
+        for (int i = 0; i < layout.getRows(); i++) {
+            double y = layout.screenY(i);
             gc.fillRect(0, y - ROAD_W / 2, w, ROAD_W);
 
             gc.setStroke(Color.WHITE);
@@ -325,8 +351,8 @@ public class TrafficView extends Application {
         }
 
         // Vertical
-        for (int i = 0; i < GRID_SIZE; i++) {
-            double x = OFFSET + (i * SPACING);
+        for (int i = 0; i < layout.getCols(); i++) {
+            double x = layout.screenX(i);
             gc.fillRect(x - ROAD_W / 2, 0, ROAD_W, h);
             gc.strokeLine(x, 0, x, h);
         }
@@ -345,15 +371,18 @@ public class TrafficView extends Application {
         int cx = node.getX();
         int cy = node.getY();
 
+        // Agents keep stepping while we draw; work from one consistent copy
+        NodeSnapshot snap = node.snapshot(drawSnapshot);
+
         // Lights
         Color nsColor, ewColor;
 
-        if (node.isInTransition()) {
+        if (snap.inTransition) {
             nsColor = Color.YELLOW;
             ewColor = Color.YELLOW;
         } else {
-            nsColor = node.isNsGreen() ? Color.LIME : Color.RED;
-            ewColor = node.isNsGreen() ? Color.RED : Color.LIME;
+            nsColor = snap.greenNS ? Color.LIME : Color.RED;
+            ewColor = snap.greenNS ? Color.RED : Color.LIME;
         }
 
         gc.setFill(Color.BLACK);
@@ -367,12 +396,12 @@ public class TrafficView extends Application {
         gc.fillOval(cx - 38, cy + 20, 10, 10);
 
         // Cars
-        int nsCount = node.getRealQueueNS();
+        int nsCount = snap.queueNS;
         int drawNS = Math.min(nsCount, 10);
         for (int i = 0; i < drawNS; i++)
             drawCar(gc, cx - CAR_SIZE / 2 + 10, cy - 50 - (i * CAR_SPACING), Color.CYAN);
 
-        int totalEW = node.getRealQueueEW();
+        int totalEW = snap.queueEW;
         int left = totalEW / 2;
         int right = totalEW - left;
 
@@ -385,7 +414,7 @@ public class TrafficView extends Application {
             drawCar(gc, cx + 35 + (i * CAR_SPACING), cy - CAR_SIZE / 2 + 10, Color.ORANGE);
 
         // Ambulance marker
-        if (node.hasAmbulance()) {
+        if (snap.sensorsWorking && snap.hasAmbulance) {
 
             gc.setFill(Color.WHITE);
             gc.fillRect(cx - 12, cy - 12, 24, 24);
@@ -400,7 +429,7 @@ public class TrafficView extends Application {
         }
 
         // Info box
-        if (!node.areSensorsWorking()) {
+        if (!snap.sensorsWorking) {
             gc.setFill(Color.RED);
             gc.fillRect(cx + 15, cy - 35, 70, 40);
             gc.setFill(Color.WHITE);
@@ -412,8 +441,8 @@ public class TrafficView extends Application {
             gc.fillRect(cx + 15, cy - 35, 60, 40);
             gc.setFill(Color.WHITE);
             gc.setFont(Font.font("Arial", FontWeight.BOLD, 14));
-            gc.fillText("N: " + node.getQueueNS(), cx + 20, cy - 20);
-            gc.fillText("W: " + node.getQueueEW(), cx + 20, cy);
+            gc.fillText("N: " + snap.queueNS, cx + 20, cy - 20);
+            gc.fillText("W: " + snap.queueEW, cx + 20, cy);
 
             CityMap.Mode mode = CityMap.getInstance().getMode();
             boolean isAdaptive = (mode == CityMap.Mode.LEARNING_ONLY || mode == CityMap.Mode.SMART);
@@ -440,13 +469,15 @@ public class TrafficView extends Application {
         // 1. GATHER DATA
         int currentTotalPassed = 0;
         long currentTotalWait = 0;
+        long currentTotalDeparted = 0;
         double totalAvgQ = 0;
         double totalCO2 = 0;
         int count = 0;
 
         for (TrafficNode n : CityMap.getInstance().getAllIntersections().values()) {
             currentTotalPassed += n.getTotalPassed();
-            currentTotalWait += n.getTotalWaitTimeRaw();
+            currentTotalWait += n.getVehicleWaitTotal();
+            currentTotalDeparted += n.getDepartures();
             totalAvgQ += n.getAverageQueue();
             totalCO2 += n.getTotalCO2();
             count++;
@@ -455,25 +486,27 @@ public class TrafficView extends Application {
         // 2. LIVE METRICS (Rolling Window)
         if (currentTime - lastSnapshotTime > 5.0) {
             long deltaWait = currentTotalWait - lastTotalWait;
-            int deltaPassed = currentTotalPassed - lastTotalPassed;
-            if (deltaPassed > 0) {
-                liveAvgWait = (double) deltaWait / deltaPassed;
+            long deltaDeparted = currentTotalDeparted - lastTotalDeparted;
+            if (deltaDeparted > 0) {
+                liveAvgWait = (double) deltaWait / deltaDeparted;
             } else {
                 liveAvgWait = 0.0;
             }
+            p95Wait = CityMap.getInstance().getStore().waitPercentile(0.95);
             lastSnapshotTime = currentTime;
             lastTotalWait = currentTotalWait;
             lastTotalPassed = currentTotalPassed;
+            lastTotalDeparted = currentTotalDeparted;
         }
 
         // 3. GLOBAL AVERAGES
-        double globalAvgWait = (currentTotalPassed > 0) ? (double)currentTotalWait / currentTotalPassed : 0.0;
+        double globalAvgWait = (currentTotalDeparted > 0) ? (double)currentTotalWait / currentTotalDeparted : 0.0;
         double globalAvgQ = (count > 0) ? totalAvgQ / count : 0.0;
         double efficiencyCO2 = (currentTotalPassed > 0) ? totalCO2 / currentTotalPassed : 0.0;
 
         // 4. DRAW BOARD
         gc.setFill(Color.color(0, 0, 0, 0.85));
-        gc.fillRoundRect(w - 320, 10, 310, 200, 10, 10);
+        gc.fillRoundRect(w - 320, 10, 310, 220, 10, 10);
 
         gc.setFill(Color.WHITE);
         gc.setFont(Font.font("Monospaced", FontWeight.BOLD, 14));
@@ -490,6 +523,8 @@ public class TrafficView extends Application {
         if (liveAvgWait <= globalAvgWait) gc.setFill(Color.LIME);
         else gc.setFill(Color.RED);
         gc.fillText(String.format("LIVE WAIT  : %.1fs", liveAvgWait), w - 300, y); y+=step;
+        gc.setFill(Color.LIGHTGRAY);
+        gc.fillText(String.format("P95 Wait   : %ds", p95Wait), w - 300, y); y+=step;
 
         gc.setFill(Color.ORANGE);
         gc.fillText(String.format("Avg CO2/Car: %.2f", efficiencyCO2), w - 300, y); y+=step;
@@ -510,42 +545,26 @@ public class TrafficView extends Application {
     private void startJade() {
         new Thread(() -> {
             try {
-                Runtime rt = Runtime.instance();
-                Profile p = new ProfileImpl();
-                p.setParameter(Profile.MAIN_HOST, "localhost");
-                p.setParameter(Profile.GUI, "false");
-                AgentContainer mc = rt.createMainContainer(p);
-
-                int spacing = 200;
-                int offset = 150;
-
-                for (int row = 0; row < 3; row++) {
-                    for (int col = 0; col < 3; col++) {
-                        String name = "Node_" + row + "_" + col;
-                        int x = offset + (col * spacing);
-                        int y = offset + (row * spacing);
-                        java.util.List<String> neighbors = new java.util.ArrayList<>();
-                        if (row > 0) neighbors.add("Node_" + (row - 1) + "_" + col);
-                        if (row < 2) neighbors.add("Node_" + (row + 1) + "_" + col);
-                        if (col > 0) neighbors.add("Node_" + row + "_" + (col - 1));
-                        if (col < 2) neighbors.add("Node_" + row + "_" + (col + 1));
-
-                        Object[] agentArgs = new Object[2 + neighbors.size()];
-                        agentArgs[0] = x;
-                        agentArgs[1] = y;
-                        for (int i = 0; i < neighbors.size(); i++)
-                            agentArgs[i + 2] = neighbors.get(i);
-
-                        AgentController ac = mc.createNewAgent(name, "agents.IntersectionAgent", agentArgs);
-                        ac.start();
-                    }
-                }
+                GridDeployer.deploy(layout, false);
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }).start();
     }
 
+    private void startEngine() {
+        Thread t = new Thread(() -> {
+            try {
+                SimulationEngine engine = HeadlessSimulation.buildGrid(layout);
+                engine.runPaced(Long.MAX_VALUE, 1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
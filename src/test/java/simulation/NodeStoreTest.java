@@ -0,0 +1,109 @@
+package simulation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Per-vehicle wait rings: every departure must report clock - entry of the car at the head,
+// across wrap-around of the flat slots and after an approach moves to a grown ring
+class NodeStoreTest {
+
+    // Capacity 4 gives rings of 4 slots
+    private static final int CAPACITY = 4;
+
+    private NodeStore store;
+    private int node;
+    private int ns;
+
+    // Entry ticks the store should hold on the NS approach, head first
+    private final ArrayDeque<Integer> entries = new ArrayDeque<>();
+    private long expectedWaitSum = 0;
+    private long expectedDepartures = 0;
+    private final int[] expectedHistogram = new int[NodeStore.WAIT_BUCKETS];
+
+    @BeforeEach
+    void setUp() {
+        store = new NodeStore(new CityMap(), 1, CAPACITY);
+        node = store.add("A", 0, 0);
+        ns = 2 * node;
+    }
+
+    @Test
+    void ringWrapsWithoutLosingEntryTicks() {
+        for (int t = 0; t < 60; t++) {
+            store.advanceClock(node, 1);
+            if (t % 3 != 2 && store.addCarsNorthSouth(node, 2)) arrive(2);
+            step();
+        }
+
+        // Capped admissions always fit the flat slots, which wrapped many times over
+        assertTrue(expectedDepartures > 4 * CAPACITY);
+        assertNull(store.grownRing[ns]);
+        assertWaits();
+    }
+
+    @Test
+    void ringGrowsPastCapacityAndKeepsOrder() {
+        // Move the head off slot 0 first, so growth has to unwrap the ring
+        store.advanceClock(node, 1);
+        assertTrue(store.addCarsNorthSouth(node, 3));
+        arrive(3);
+        step();
+        assertEquals(1, store.ringHead[ns]);
+
+        // Hold north-south on red while uncapped arrivals pile up behind the two waiting cars
+        store.switchLight(node);
+        for (int t = 0; t < 8; t++) {
+            store.advanceClock(node, 1);
+            store.addAmbulance(node);
+            store.addAmbulance(node);
+            arrive(2);
+            step(); // stamps the inbox with this tick
+        }
+        assertNotNull(store.grownRing[ns]);
+        assertEquals(entries.size(), store.ringCount[ns]);
+
+        // Back to green: the ambulance clears the whole queue at once, oldest first
+        store.switchLight(node);
+        while (store.ringCount[ns] > 0) {
+            store.advanceClock(node, 1);
+            step();
+        }
+        assertFalse(store.hasAmbulance[node]);
+        assertWaits();
+    }
+
+    // Cars just admitted (or stamped from the inbox) at the node's current clock
+    private void arrive(int cars) {
+        for (int k = 0; k < cars; k++) entries.addLast(store.getClock(node));
+    }
+
+    // One owner step with nothing downstream: whatever passes leaves the grid
+    private void step() {
+        int moved = store.processFlow(node);
+        store.settleOutflow(node);
+        for (int k = 0; k < moved; k++) {
+            int wait = store.getClock(node) - entries.removeFirst();
+            expectedWaitSum += wait;
+            expectedDepartures++;
+            expectedHistogram[NodeStore.waitBucket(wait)]++;
+        }
+        assertEquals(entries.size(), store.ringCount[ns]);
+    }
+
+    private void assertWaits() {
+        assertEquals(expectedDepartures, store.sumDepartures());
+        assertEquals(expectedWaitSum, store.sumVehicleWait());
+        int[] histogram = new int[NodeStore.WAIT_BUCKETS];
+        System.arraycopy(store.waitHistogram, node * NodeStore.WAIT_BUCKETS, histogram, 0, NodeStore.WAIT_BUCKETS);
+        assertArrayEquals(expectedHistogram, histogram);
+    }
+}
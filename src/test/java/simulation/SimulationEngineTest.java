@@ -0,0 +1,84 @@
+package simulation;
+
+import agents.IntersectionController;
+import agents.PolicyStore;
+import agents.QTableRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.traffic.HeadlessSimulation;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Same grid, same seed: the results may not depend on the thread count or on skipping idle nodes
+class SimulationEngineTest {
+
+    private static final int ROWS = 10, COLS = 10;
+    private static final long TICKS = 1500;
+
+    @ParameterizedTest
+    @EnumSource(CityMap.Mode.class)
+    void resultsDoNotDependOnThreadsOrEventDriven(CityMap.Mode mode) throws Exception {
+        Result dense = run(mode, 1, false, false);
+        assertSame(dense, run(mode, 4, false, false), "dense, 4 threads");
+        assertSame(dense, run(mode, 1, true, false), "event-driven, 1 thread");
+        assertSame(dense, run(mode, 4, true, false), "event-driven, 4 threads");
+    }
+
+    @Test
+    void plannedGreenWaveDoesNotDependOnThreadsOrEventDriven() throws Exception {
+        Result dense = run(CityMap.Mode.COORD_GREEN_WAVE, 1, false, true);
+        assertSame(dense, run(CityMap.Mode.COORD_GREEN_WAVE, 4, false, true), "dense, 4 threads");
+        assertSame(dense, run(CityMap.Mode.COORD_GREEN_WAVE, 1, true, true), "event-driven, 1 thread");
+        assertSame(dense, run(CityMap.Mode.COORD_GREEN_WAVE, 4, true, true), "event-driven, 4 threads");
+    }
+
+    private static void assertSame(Result expected, Result actual, String run) {
+        assertEquals(expected.passed, actual.passed, run + ": throughput");
+        assertEquals(expected.departures, actual.departures, run + ": departures");
+        assertEquals(expected.waitSum, actual.waitSum, run + ": wait sum");
+        assertArrayEquals(expected.histogram, actual.histogram, run + ": wait histogram");
+    }
+
+    private static Result run(CityMap.Mode mode, int threads, boolean eventDriven, boolean planned) throws Exception {
+        CityMap map = new CityMap();
+        map.setMode(mode);
+        // Light side traffic, so event-driven runs leave part of the grid asleep
+        map.setTrafficParams(50, 5);
+        SimulationEngine engine = HeadlessSimulation.buildGrid(map, new GridLayout(ROWS, COLS),
+                new QTableRegistry(), new PolicyStore());
+        if (planned) {
+            GreenWavePlanner planner = new GreenWavePlanner(map.getStore());
+            engine.setPlanner(planner, GreenWavePlanner.DEFAULT_PERIOD, (node, offset, greenNS, cycle) -> {
+                ((IntersectionController) engine.getController(node)).onOffsetSchedule(offset, greenNS, cycle);
+                engine.wake(node);
+            });
+        }
+        engine.setParallelism(threads);
+        engine.setEventDriven(eventDriven);
+        map.setSimulationRunning(true);
+        try {
+            engine.run(TICKS);
+        } finally {
+            engine.shutdown();
+        }
+
+        NodeStore store = map.getStore();
+        Result r = new Result();
+        r.passed = store.sumCarsPassed();
+        r.departures = store.sumDepartures();
+        r.waitSum = store.sumVehicleWait();
+        r.histogram = Arrays.copyOf(store.waitHistogram, store.size() * NodeStore.WAIT_BUCKETS);
+        return r;
+    }
+
+    private static class Result {
+        long passed;
+        long departures;
+        long waitSum;
+        int[] histogram;
+    }
+}